@@ -0,0 +1,106 @@
+package hotel;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * This class is used to stress the booking of rooms from many threads at once.
+ * Every thread tries to book every room of the same hotel while other threads keep listing the empty rooms.
+ * Each room must end up booked exactly once, otherwise the program exits with an error.
+ * Usage: java -Duser.home={temporary directory} hotel.BookingStress {rooms} {threads}
+ */
+public class BookingStress
+{
+    public static void main(String ... args) throws Exception
+    {
+        int numberOfRooms = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+
+        Files.createDirectories(Paths.get(Hotel.savePath)); // The journal needs a directory to write to
+        Hotel hotel = new Hotel("Stress Hotel", "Nowhere", 1);
+        List<Room> rooms = new ArrayList<>();
+        for(int i = 0; i < numberOfRooms; ++i)
+            rooms.add(new Room("Stress Room", 100, 1));
+        hotel.addRooms(rooms);
+        Hotel.addHotel(hotel);
+        Journal.open();
+
+        AtomicIntegerArray bookings = new AtomicIntegerArray(numberOfRooms); // The number of successful bookings of each room
+        AtomicBoolean booking = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+
+        Thread reader = new Thread(() -> {
+            while(booking.get()) // Keep listing the rooms while they are being booked
+            {
+                List<Room> empty = hotel.getEmptyRooms();
+                if(empty.size() > numberOfRooms)
+                    throw new IllegalStateException("More empty rooms than rooms");
+            }
+        });
+        reader.start();
+
+        Thread[] bookers = new Thread[threads];
+        for(int t = 0; t < threads; ++t)
+        {
+            String customer = "Customer " + t;
+            bookers[t] = new Thread(() -> {
+                try
+                {
+                    start.await();
+                }
+                catch (InterruptedException e)
+                {
+                    return;
+                }
+                int offset = ThreadLocalRandom.current().nextInt(numberOfRooms); // Every thread starts at a different room
+                for(int i = 0; i < numberOfRooms; ++i)
+                {
+                    int index = (offset + i) % numberOfRooms;
+                    try
+                    {
+                        hotel.book(customer, "stress@hotel", "01/01/2030", 1, hotel.getRooms().get(index));
+                        bookings.incrementAndGet(index);
+                    }
+                    catch (Exception ignored)
+                    {
+                        // The room was booked by another thread first
+                    }
+                }
+            });
+            bookers[t].start();
+        }
+
+        long time = System.nanoTime();
+        start.countDown();
+        for(Thread thread : bookers)
+            thread.join();
+        time = System.nanoTime() - time;
+        booking.set(false);
+        reader.join();
+
+        int failures = 0;
+        for(int i = 0; i < numberOfRooms; ++i)
+        {
+            if(bookings.get(i) != 1 || !hotel.getRooms().get(i).hasBookings())
+            {
+                System.out.println("Room " + (i + 1) + " was booked " + bookings.get(i) + " times");
+                ++failures;
+            }
+        }
+
+        System.out.println(threads + " threads booked " + numberOfRooms + " rooms in " + time / 1000000 + " ms");
+        if(failures > 0)
+        {
+            System.out.println("FAILED: " + failures + " rooms were not booked exactly once");
+            System.exit(1);
+        }
+        System.out.println("PASSED: every room was booked exactly once");
+        System.exit(0);
+    }
+}
@@ -0,0 +1,45 @@
+package hotel;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * This class is used to compare filtering the rooms of a hotel by price and number of beds with a stream over the list of rooms
+ * against the search of the hotel, which picks the rooms from the bitmaps of its index and only reads the prices of those rooms from its columns.
+ * Both produce the same rooms, sorted by price, which is checked before measuring.
+ * Usage: java hotel.ColumnsBenchmark {rooms}
+ */
+public class ColumnsBenchmark extends Harness
+{
+    public static void main(String ... args) throws Exception
+    {
+        int numberOfRooms = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        Random random = new Random(42);
+
+        List<Room> rooms = rooms(numberOfRooms, random);
+        Hotel hotel = new Hotel("Benchmark Hotel", "Nowhere", 5);
+        hotel.addRooms(rooms);
+        int from = BookingDetails.today(), to = from + 3; // Nothing is booked, so every room is free
+        System.out.println(numberOfRooms + " rooms");
+
+        int[][] queries = { { 329, 2 }, { 150, 1 }, { 60, 3 } }; // Most rooms, about half the rooms, few rooms
+        for(int[] query : queries)
+        {
+            int price = query[0], beds = query[1];
+            Supplier<List<Room>> stream = () -> hotel.getRooms().stream().filter(room -> room.price <= price && room.numberOfBeds == beds)
+                    .sorted(Comparator.comparingInt((Room room) -> room.price).thenComparingInt(room -> room.number)).collect(Collectors.toList());
+            Supplier<List<Room>> search = () -> hotel.search(price, beds, from, to);
+            List<Room> expected = stream.get();
+            if(!expected.equals(search.get()))
+                throw new IllegalStateException("The stream and the search disagree for price " + price + " and " + beds + " beds");
+
+            long streamTime = measure(stream::get);
+            long searchTime = measure(search::get);
+            System.out.printf("price <= %3d, beds %2d: %7d rooms, stream %9.1f us, search %9.1f us%n",
+                    price, beds, expected.size(), streamTime / 1000.0, searchTime / 1000.0);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package hotel;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This class is used to report how much heap the room descriptions of a large catalogue take.
+ * It loads a text data file, whose every room repeats its description, and compares the heap the loaded hotels use
+ * with the heap one copy of the description per room takes, which is what loading used to keep.
+ * Usage: java hotel.DescriptionBenchmark {rooms}
+ */
+public class DescriptionBenchmark extends Harness
+{
+    public static void main(String ... args) throws Exception
+    {
+        int numberOfRooms = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        Random random = new Random(42);
+
+        Hotel hotel = new Hotel("Benchmark Hotel", "Nowhere", 5);
+        List<Room> rooms = rooms(numberOfRooms, random);
+        hotel.addRooms(rooms);
+        Hotel.addHotel(hotel);
+        Path text = Files.createTempFile("hotels", ".txt");
+        Hotel.saveText(text);
+        Hotel.hotels.clear();
+        hotel = null;
+        rooms = null;
+
+        long before = usedHeap();
+        Hotel.loadRooms(text);
+        long loaded = usedHeap() - before;
+        Files.delete(text);
+
+        List<String> copies = new ArrayList<>(numberOfRooms); // One copy of the description per room, as loading used to keep
+        for(Room room : Hotel.getHotel(0).getRooms())
+            copies.add(new String(room.getDescription().toCharArray()));
+        long copied = usedHeap() - before - loaded;
+
+        long dictionary = 0;
+        for(int id = 0; id < Descriptions.size(); ++id)
+            dictionary += 40 + Descriptions.get(id).length(); // The String, its array of Latin-1 bytes and their headers
+        System.out.println(numberOfRooms + " rooms, " + Descriptions.size() + " distinct descriptions");
+        System.out.printf("Loaded hotels:            %8d KB (%d bytes per room)%n", loaded / 1024, loaded / numberOfRooms);
+        System.out.printf("Dictionary:               %8d KB%n", dictionary / 1024);
+        System.out.printf("One copy per room before: %8d KB (%d bytes per room)%n", copied / 1024, copied / copies.size());
+    }
+}
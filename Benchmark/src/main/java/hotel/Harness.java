@@ -0,0 +1,196 @@
+package hotel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class holds what the benchmarks have in common: timing an operation after warming it up, running it from many threads,
+ * measuring the heap and generating catalogues. Every benchmark of this folder is a plain program that only needs the classes of the server,
+ * since the repository has no build that could bring in a benchmarking library.
+ * The time spent warming up and measuring each operation can be changed with -Dbench.warmup and -Dbench.time, in milliseconds.
+ * The result of every operation that is measured is consumed, see {@link #consume(Object)}, so that the JIT cannot drop an operation that only reads.
+ */
+public class Harness
+{
+    protected static final int warmup = Integer.getInteger("bench.warmup", 500); // The time, in milliseconds, an operation runs before it is measured
+    protected static final int time = Integer.getInteger("bench.time", 1000); // The time, in milliseconds, an operation is measured for
+
+    private static volatile Object bait = new Object(); // Never the result of an operation, but the JIT cannot know that
+    protected static volatile Object sink; // Where a result would go if it were the bait
+
+    /**
+     * This interface is used to pass an operation that may fail and returns a result, which is consumed.
+     */
+    protected interface Task
+    {
+        Object run() throws Exception;
+    }
+
+    /**
+     * This interface is used to pass an operation that is told which thread runs it and returns a result, which is consumed.
+     */
+    protected interface ThreadTask
+    {
+        Object run(int thread) throws Exception;
+    }
+
+    /**
+     * This interface is used to pass an operation that may fail and changes the state of the server, such as saving or loading the hotels.
+     */
+    protected interface Action
+    {
+        void run() throws Exception;
+    }
+
+    /**
+     * This method uses the result of an operation, so that the operation has to be run even if it only reads.
+     * The result is compared with a volatile field it never equals, which costs a read but never writes to memory shared by the threads.
+     * @param result the result of the operation.
+     */
+    protected static void consume(Object result)
+    {
+        if(result == Harness.bait)
+            Harness.sink = result;
+    }
+
+    /**
+     * This method measures the average time an operation takes on a single thread, after warming it up.
+     * @param task the operation being measured.
+     * @return the average time in nanoseconds.
+     * @throws Exception if the operation fails.
+     */
+    protected static long measure(Task task) throws Exception
+    {
+        long end = System.nanoTime() + warmup * 1000000L;
+        while(System.nanoTime() < end)
+            consume(task.run());
+
+        long operations = 0;
+        long start = System.nanoTime();
+        end = start + time * 1000000L;
+        long now;
+        do
+        {
+            consume(task.run());
+            ++operations;
+        }
+        while((now = System.nanoTime()) < end);
+        return (now - start) / operations;
+    }
+
+    /**
+     * This method measures how many times per second a number of threads together run an operation, after warming it up.
+     * An operation that throws counts as done; the benchmark decides whether failing is part of the measurement.
+     * @param threads the number of threads.
+     * @param task the operation being measured.
+     * @return the number of operations per second.
+     * @throws InterruptedException if the benchmark is interrupted.
+     */
+    protected static double throughput(int threads, ThreadTask task) throws InterruptedException
+    {
+        LongAdder operations = new LongAdder();
+        AtomicBoolean measuring = new AtomicBoolean(false);
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch done = new CountDownLatch(threads);
+        for(int t = 0; t < threads; ++t)
+        {
+            int thread = t;
+            Thread worker = new Thread(() -> {
+                while(running.get())
+                {
+                    try
+                    {
+                        consume(task.run(thread));
+                    }
+                    catch (Exception ignored)
+                    {
+                        // Counted like any other operation
+                    }
+                    if(measuring.get())
+                        operations.increment();
+                }
+                done.countDown();
+            }, "Benchmark " + t);
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        Thread.sleep(warmup);
+        measuring.set(true);
+        long start = System.nanoTime();
+        Thread.sleep(time);
+        measuring.set(false);
+        long elapsed = System.nanoTime() - start;
+        running.set(false);
+        done.await();
+        return operations.sum() * 1e9 / elapsed;
+    }
+
+    /**
+     * This method measures the average time an operation that takes long, such as saving or loading a catalogue, takes over a few runs.
+     * @param runs the number of runs, after a first one that is not counted.
+     * @param task the operation being measured.
+     * @return the average time in nanoseconds.
+     * @throws Exception if the operation fails.
+     */
+    protected static long once(int runs, Action task) throws Exception
+    {
+        task.run(); // Warm up
+        long total = 0;
+        for(int run = 0; run < runs; ++run)
+        {
+            long start = System.nanoTime();
+            task.run();
+            total += System.nanoTime() - start;
+        }
+        return total / runs;
+    }
+
+    /**
+     * This method returns the heap in use after collecting the garbage.
+     * @return the number of bytes in use.
+     * @throws InterruptedException if the benchmark is interrupted.
+     */
+    protected static long usedHeap() throws InterruptedException
+    {
+        for(int i = 0; i < 3; ++i)
+        {
+            System.gc();
+            Thread.sleep(100);
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * This method generates the rooms of a catalogue, with the descriptions of the default hotels, a price between 30 and 329 and 1 to 3 beds.
+     * @param numberOfRooms the number of rooms.
+     * @param random the source of the random fields.
+     * @return the list of rooms, which have not been added to a hotel yet.
+     */
+    protected static List<Room> rooms(int numberOfRooms, Random random)
+    {
+        List<Room> rooms = new ArrayList<>(numberOfRooms);
+        for(int i = 0; i < numberOfRooms; ++i)
+            rooms.add(new Room(Setup.descriptions[random.nextInt(Setup.descriptions.length)], 30 + random.nextInt(300), 1 + random.nextInt(3)));
+        return rooms;
+    }
+
+    /**
+     * This method formats a time for a report, in the unit that suits it.
+     * @param nanoseconds the time in nanoseconds.
+     * @return the formatted time.
+     */
+    protected static String format(long nanoseconds)
+    {
+        if(nanoseconds < 10000)
+            return String.format("%7d ns", nanoseconds);
+        if(nanoseconds < 10000000)
+            return String.format("%7.1f us", nanoseconds / 1000.0);
+        return String.format("%7.1f ms", nanoseconds / 1000000.0);
+    }
+}
@@ -0,0 +1,187 @@
+package hotel;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class is used to measure the hot paths of a hotel for a range of catalogue sizes and numbers of threads:
+ * the queries behind the menu (empty rooms, booked rooms, search by price, search by beds and the rooms of a customer),
+ * booking and cancelling rooms while other threads do the same, and saving and loading the data file.
+ * Queries, bookings and cancellations report how many operations all the threads run per second and how long one takes on average;
+ * saving and loading report the average time of a few runs.
+ * The server files are written to a temporary directory, and the journal is never compacted, so that saving the catalogue is only measured on its own.
+ * Usage: java hotel.HotelBenchmark {sizes} {threads} {suites}, e.g. java hotel.HotelBenchmark 5,1000,100000,1000000 1,4,16 reads,bookings,persistence
+ */
+public class HotelBenchmark extends Harness
+{
+    private static final int customers = 100; // The number of customers the rooms booked before measuring belong to
+    private static final int hotRooms = 16; // The number of rooms that bookings compete for
+    private static final int nights = 60; // The number of nights, from tomorrow on, that bookings start on
+
+    public static void main(String ... args) throws Exception
+    {
+        int[] sizes = numbers(args.length > 0 ? args[0] : "5,1000,100000,1000000");
+        int[] threads = numbers(args.length > 1 ? args[1] : "1,4,16");
+        Set<String> suites = new HashSet<>(Arrays.asList((args.length > 2 ? args[2] : "reads,bookings,persistence").split(",")));
+
+        // Set before the server classes read them
+        System.setProperty("user.home", Files.createTempDirectory("hotel-benchmark").toString());
+        System.setProperty("hotel.compaction", String.valueOf(Integer.MAX_VALUE));
+        Files.createDirectories(Path.of(Hotel.savePath)); // The journal needs a directory to write to
+        Journal.open();
+
+        for(int size : sizes)
+        {
+            Hotel.hotels.clear();
+            Hotel hotel = catalogue(size, new Random(42));
+            Hotel.addHotel(hotel);
+            System.out.println();
+            System.out.println(size + " rooms, " + hotel.getBookedRooms().size() + " booked");
+            if(suites.contains("reads"))
+                reads(hotel, threads);
+            if(suites.contains("bookings"))
+                bookings(hotel, threads);
+            if(suites.contains("persistence"))
+                persistence(hotel);
+        }
+        System.exit(0); // Stop the journal writer
+    }
+
+    /**
+     * This method creates a hotel and books about one room in ten, for a customer among a hundred, on a night within the next month.
+     * The bookings are made on the rooms directly, so they are not written to the journal.
+     * @param size the number of rooms.
+     * @param random the source of the random fields.
+     * @return the hotel, which has not been added to the server.
+     */
+    private static Hotel catalogue(int size, Random random) throws Exception
+    {
+        Hotel hotel = new Hotel("Benchmark Hotel", "Nowhere", 5);
+        hotel.addRooms(rooms(size, random));
+        int today = BookingDetails.today();
+        for(Room room : hotel.getRooms())
+            if(random.nextInt(10) == 0)
+                room.book("Customer " + random.nextInt(customers), today + random.nextInt(30), 1 + random.nextInt(7));
+        return hotel;
+    }
+
+    /**
+     * This method measures the queries of the menu.
+     * @param hotel the hotel being queried.
+     * @param threads the numbers of threads to measure with.
+     */
+    private static void reads(Hotel hotel, int[] threads) throws Exception
+    {
+        report("getEmptyRooms", threads, thread -> hotel.getEmptyRooms());
+        report("getBookedRooms", threads, thread -> hotel.getBookedRooms());
+        report("searchByPrice", threads, thread -> hotel.searchByPrice(30 + ThreadLocalRandom.current().nextInt(300)));
+        report("searchByBeds", threads, thread -> hotel.searchByBeds(1 + ThreadLocalRandom.current().nextInt(3)));
+        report("getRoomsBooked", threads, thread -> hotel.getRoomsBooked("Customer " + ThreadLocalRandom.current().nextInt(customers)));
+    }
+
+    /**
+     * This method measures booking a room and cancelling the booking again, with every thread competing for the same few rooms.
+     * A booking that fails because another thread holds the room for one of its nights counts as an operation, and is reported as a conflict.
+     * @param hotel the hotel being booked.
+     * @param threads the numbers of threads to measure with.
+     */
+    private static void bookings(Hotel hotel, int[] threads) throws Exception
+    {
+        List<Room> rooms = hotel.getRooms();
+        int hot = Math.min(hotRooms, rooms.size());
+        String[] dates = new String[nights]; // Formatted once, so that the benchmark does not measure formatting
+        DateTimeFormatter format = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+        for(int night = 0; night < nights; ++night)
+            dates[night] = LocalDate.now().plusDays(100 + night).format(format); // Past the nights booked by the catalogue
+
+        for(int count : threads)
+        {
+            LongAdder conflicts = new LongAdder();
+            double rate = throughput(count, thread -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                Room room = rooms.get(random.nextInt(hot));
+                String customer = "Booker " + thread;
+                try
+                {
+                    hotel.book(customer, "benchmark@hotel", dates[random.nextInt(nights)], 1 + random.nextInt(3), room);
+                }
+                catch (Exception exception)
+                {
+                    conflicts.increment();
+                    return null;
+                }
+                hotel.deleteBooking(customer, room);
+                return room;
+            });
+            System.out.printf("  %-16s %3d threads: %12.0f ops/s, %s per op, %d conflicts%n", "book+delete", count, rate, format((long)(count * 1e9 / rate)), conflicts.sum());
+        }
+    }
+
+    /**
+     * This method measures saving the hotels to the data file in the configured format, and loading them from either format.
+     * @param hotel the hotel of the server, which is added back after loading.
+     */
+    private static void persistence(Hotel hotel) throws Exception
+    {
+        int runs = hotel.getRooms().size() >= 100000 ? 3 : 10;
+        System.out.printf("  %-16s %s (%s)%n", "saveRooms", format(once(runs, Hotel::saveRooms)), Config.format);
+
+        Path directory = Files.createTempDirectory("hotel-benchmark-files");
+        Path text = directory.resolve("hotels.txt");
+        Path binary = directory.resolve("hotels.bin");
+        Hotel.saveText(text);
+        Snapshot.save(binary);
+        System.out.printf("  %-16s %s (%d KB)%n", "loadRooms text", format(once(runs, () -> load(() -> Hotel.loadRooms(text)))), Files.size(text) / 1024);
+        System.out.printf("  %-16s %s (%d KB)%n", "loadRooms binary", format(once(runs, () -> load(() -> Snapshot.load(binary)))), Files.size(binary) / 1024);
+        Files.delete(text);
+        Files.delete(binary);
+        Files.delete(directory);
+
+        Hotel.hotels.clear();
+        Hotel.addHotel(hotel);
+    }
+
+    /**
+     * This method loads the hotels into a server without hotels.
+     * @param loader loads the hotels.
+     */
+    private static void load(Action loader) throws Exception
+    {
+        Hotel.hotels.clear();
+        loader.run();
+    }
+
+    /**
+     * This method measures a query with each number of threads and prints a line per number.
+     * @param name the name of the query.
+     * @param threads the numbers of threads.
+     * @param query the query being measured.
+     */
+    private static void report(String name, int[] threads, ThreadTask query) throws InterruptedException
+    {
+        for(int count : threads)
+        {
+            double rate = throughput(count, query);
+            System.out.printf("  %-16s %3d threads: %12.0f ops/s, %s per op%n", name, count, rate, format((long)(count * 1e9 / rate)));
+        }
+    }
+
+    /**
+     * This method parses a comma-separated list of numbers.
+     * @param list the list.
+     * @return the numbers.
+     */
+    private static int[] numbers(String list)
+    {
+        return Arrays.stream(list.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+}
@@ -0,0 +1,66 @@
+package hotel;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * This class is used to compare keeping the rooms on the heap with keeping them in a memory-mapped store.
+ * It generates a catalogue without bookings, saves it both as a snapshot and as a store, and then measures for each how long the hotels take
+ * to become available and how much heap they use, as well as how long a search takes.
+ * Usage: java hotel.MappedStoreBenchmark {rooms} {hotels}
+ */
+public class MappedStoreBenchmark extends Harness
+{
+    public static void main(String ... args) throws Exception
+    {
+        int numberOfRooms = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+        int numberOfHotels = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        Random random = new Random(42);
+
+        for(int h = 0; h < numberOfHotels; ++h)
+        {
+            Hotel hotel = new Hotel("Benchmark Hotel " + h, "Nowhere", 1 + h % 5);
+            hotel.addRooms(rooms((numberOfRooms - h + numberOfHotels - 1) / numberOfHotels, random));
+            Hotel.addHotel(hotel);
+        }
+
+        Path directory = Files.createTempDirectory("mapped-benchmark");
+        Path snapshot = directory.resolve("hotels.bin");
+        Path store = directory.resolve("hotels.map");
+        Path bookings = directory.resolve("bookings.bin");
+        Snapshot.save(snapshot);
+        MappedStore.create(store, bookings);
+        System.out.println(numberOfRooms + " rooms in " + numberOfHotels + " hotels: snapshot " + Files.size(snapshot) / 1024 + " KB, store " + Files.size(store) / 1024 + " KB");
+
+        load("Heap  ", () -> Snapshot.load(snapshot));
+        load("Mapped", () -> MappedStore.open(store, bookings));
+
+        Files.delete(snapshot);
+        Files.delete(store);
+        Files.delete(bookings);
+        Files.delete(directory);
+    }
+
+    /**
+     * This method loads the hotels and reports how long that took, how much heap they use and how long a search takes.
+     * @param name the name of the storage being measured.
+     * @param loader loads the hotels.
+     * @throws Exception if the hotels could not be loaded.
+     */
+    private static void load(String name, Action loader) throws Exception
+    {
+        Hotel.hotels.clear();
+        long before = usedHeap();
+        long start = System.nanoTime();
+        loader.run();
+        long load = System.nanoTime() - start;
+        long heap = usedHeap() - before;
+
+        Hotel hotel = Hotel.getHotel(0);
+        int today = BookingDetails.today();
+        long search = measure(() -> hotel.search(100, 2, today, today + 3));
+        int found = hotel.search(100, 2, today, today + 3).size();
+        System.out.printf("%s: ready in %6d ms, heap %7d KB, search %8.1f us (%d rooms)%n", name, load / 1000000, heap / 1024, search / 1000.0, found);
+    }
+}
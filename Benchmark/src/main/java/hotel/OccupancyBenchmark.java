@@ -0,0 +1,56 @@
+package hotel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * This class is used to measure how fast the empty rooms of a large hotel are found for a range of nights.
+ * It compares the occupancy bitmaps of the hotel against checking the bookings of every room, and reports the memory used by the bitmaps.
+ * Usage: java hotel.OccupancyBenchmark {rooms} {nights}
+ */
+public class OccupancyBenchmark extends Harness
+{
+    public static void main(String ... args) throws Exception
+    {
+        int numberOfRooms = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int nights = args.length > 1 ? Integer.parseInt(args[1]) : 365;
+        int today = BookingDetails.today();
+        Random random = new Random(42);
+
+        Hotel hotel = new Hotel("Benchmark Hotel", "Nowhere", 5);
+        List<Room> rooms = new ArrayList<>();
+        for(int i = 0; i < numberOfRooms; ++i)
+            rooms.add(new Room("Benchmark Room", 100, 1));
+        hotel.addRooms(rooms);
+
+        // Fill the calendar of every room with stays of 1 to 7 nights, leaving a gap of 0 to 7 nights between them
+        long bookings = 0;
+        for(Room room : hotel.getRooms())
+        {
+            for(int night = today + random.nextInt(8); night < today + nights; )
+            {
+                int duration = Math.min(1 + random.nextInt(7), today + nights - night);
+                room.book("Benchmark Customer", night, duration);
+                night += duration + random.nextInt(8);
+                ++bookings;
+            }
+        }
+        System.out.println(numberOfRooms + " rooms, " + nights + " nights, " + bookings + " bookings");
+        System.out.println("Occupancy bitmaps: " + hotel.occupancy.getNights() + " nights using " + hotel.occupancy.memoryUsage() / 1024 + " KB");
+
+        for(int length : new int[] { 1, 3, 7, 30 })
+        {
+            int from = today + random.nextInt(nights - length);
+            int to = from + length;
+            List<Room> expected = hotel.getRooms().stream().filter(room -> room.isFree(from, to)).collect(Collectors.toList());
+            if(!expected.equals(hotel.getEmptyRooms(from, to)))
+                throw new IllegalStateException("The bitmaps and the bookings disagree for " + length + " nights");
+
+            long bitmaps = measure(() -> hotel.getEmptyRooms(from, to));
+            long scan = measure(() -> hotel.getRooms().stream().filter(room -> room.isFree(from, to)).collect(Collectors.toList()));
+            System.out.printf("%2d nights: %5d empty rooms, bitmaps %8.1f us, room scan %8.1f us%n", length, expected.size(), bitmaps / 1000.0, scan / 1000.0);
+        }
+    }
+}
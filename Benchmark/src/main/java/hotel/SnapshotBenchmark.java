@@ -0,0 +1,84 @@
+package hotel;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This class is used to measure how long the server takes to load a large catalogue on startup, from the text data file and from the binary snapshot.
+ * The hotels are generated in memory with a few bookings per room, saved in both formats, and then loaded back a few times each.
+ * Usage: java hotel.SnapshotBenchmark {rooms} {hotels}
+ */
+public class SnapshotBenchmark extends Harness
+{
+    public static void main(String ... args) throws Exception
+    {
+        int numberOfRooms = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int numberOfHotels = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int today = BookingDetails.today();
+        Random random = new Random(42);
+
+        for(int h = 0; h < numberOfHotels; ++h)
+        {
+            Hotel hotel = new Hotel("Benchmark Hotel " + h, "Nowhere", 1 + h % 5);
+            List<Room> rooms = new ArrayList<>();
+            for(int i = h; i < numberOfRooms; i += numberOfHotels)
+            {
+                Room room = new Room(Setup.descriptions[random.nextInt(Setup.descriptions.length)], 30 + random.nextInt(300), 1 + random.nextInt(3));
+                for(int night = today + random.nextInt(30), bookings = random.nextInt(4); bookings > 0; --bookings) // Up to three bookings per room
+                {
+                    int duration = 1 + random.nextInt(7);
+                    room.setDetails(new BookingDetails(BookingDetails.anonymous, night, duration, System.currentTimeMillis()));
+                    night += duration + random.nextInt(10);
+                }
+                rooms.add(room);
+            }
+            hotel.addRooms(rooms);
+            Hotel.addHotel(hotel);
+        }
+
+        Path directory = Files.createTempDirectory("snapshot-benchmark");
+        Path text = directory.resolve("hotels.txt");
+        Path binary = directory.resolve("hotels.bin");
+        long start = System.nanoTime();
+        Hotel.saveText(text);
+        long textSave = System.nanoTime() - start;
+        start = System.nanoTime();
+        Snapshot.save(binary);
+        long binarySave = System.nanoTime() - start;
+        System.out.println(numberOfRooms + " rooms in " + numberOfHotels + " hotels");
+        System.out.printf("Save: text %6d ms (%6d KB), binary %6d ms (%6d KB)%n", textSave / 1000000, Files.size(text) / 1024, binarySave / 1000000, Files.size(binary) / 1024);
+
+        for(int run = 1; run <= 3; ++run)
+        {
+            long textLoad = load(() -> Hotel.loadRooms(text));
+            long binaryLoad = load(() -> Snapshot.load(binary));
+            System.out.printf("Load %d: text %6d ms, binary %6d ms%n", run, textLoad / 1000000, binaryLoad / 1000000);
+        }
+
+        Files.delete(text);
+        Files.delete(binary);
+        Files.delete(directory);
+    }
+
+    /**
+     * This method measures how long loading the hotels takes, starting from a server without hotels.
+     * @param loader loads the hotels.
+     * @return the time taken in nanoseconds.
+     * @throws Exception if the hotels could not be loaded.
+     */
+    private static long load(Action loader) throws Exception
+    {
+        int rooms = Hotel.getHotels().stream().mapToInt(hotel -> hotel.getRooms().size()).sum();
+        Hotel.hotels.clear();
+        System.gc(); // Do not charge the garbage of the previous load to this one
+        long start = System.nanoTime();
+        loader.run();
+        long time = System.nanoTime() - start;
+        if(Hotel.getHotels().stream().mapToInt(hotel -> hotel.getRooms().size()).sum() != rooms)
+            throw new IllegalStateException("The number of rooms loaded does not match the number saved");
+        return time;
+    }
+}
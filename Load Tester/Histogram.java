@@ -0,0 +1,115 @@
+/**
+ * This class represents a histogram of latencies.
+ * Latencies are counted in buckets whose width grows with the latency: every power of two, in microseconds, is split into 16 buckets,
+ * so any latency is known to within about 6% while the histogram stays the same small size whatever it holds.
+ * A histogram is only used by one thread at a time; the histograms of the users are merged once the test is over.
+ */
+class Histogram
+{
+	private static final int SUB_BUCKETS = 16; // The number of buckets each power of two is split into
+	private static final int SUB_BITS = 4; // The number of bits needed to count the buckets of a power of two
+
+	private final long[] counts = new long[64 * SUB_BUCKETS];
+	private long count = 0; // The number of latencies recorded
+	private long total = 0; // The sum of the latencies recorded, in microseconds
+	private long max = 0; // The highest latency recorded, in microseconds
+
+	/**
+	 * This method records a latency.
+	 * @param nanoseconds the latency in nanoseconds.
+	 */
+	void record(long nanoseconds)
+	{
+		long micros = Math.max(0, nanoseconds / 1000);
+		++this.counts[bucket(micros)];
+		++this.count;
+		this.total += micros;
+		this.max = Math.max(this.max, micros);
+	}
+
+	/**
+	 * This method adds the latencies of another histogram to this one.
+	 * @param other the histogram being added.
+	 */
+	void add(Histogram other)
+	{
+		for(int i = 0; i < this.counts.length; ++i)
+			this.counts[i] += other.counts[i];
+		this.count += other.count;
+		this.total += other.total;
+		this.max = Math.max(this.max, other.max);
+	}
+
+	/**
+	 * This method returns the number of latencies recorded.
+	 * @return the number of latencies.
+	 */
+	long count()
+	{
+		return this.count;
+	}
+
+	/**
+	 * This method returns the average latency.
+	 * @return the average latency in microseconds.
+	 */
+	long mean()
+	{
+		return this.count == 0 ? 0 : this.total / this.count;
+	}
+
+	/**
+	 * This method returns the highest latency recorded.
+	 * @return the highest latency in microseconds.
+	 */
+	long max()
+	{
+		return this.max;
+	}
+
+	/**
+	 * This method returns the latency below which a share of the latencies fall.
+	 * @param percentile the share of the latencies, from 0 to 100.
+	 * @return the highest latency of the bucket holding that share, in microseconds.
+	 */
+	long percentile(double percentile)
+	{
+		long rank = (long)Math.ceil(this.count * percentile / 100);
+		long seen = 0;
+		for(int i = 0; i < this.counts.length; ++i)
+		{
+			seen += this.counts[i];
+			if(seen >= rank && seen > 0)
+				return Math.min(this.max, highest(i));
+		}
+		return this.max;
+	}
+
+	/**
+	 * This method finds the bucket of a latency.
+	 * Latencies below 16 microseconds each have their own bucket; above, the bucket is found from the highest bit of the latency and the 4 bits after it.
+	 * @param micros the latency in microseconds.
+	 * @return the index of the bucket.
+	 */
+	private static int bucket(long micros)
+	{
+		if(micros < SUB_BUCKETS)
+			return (int)micros;
+		int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int)((micros >>> shift) - SUB_BUCKETS);
+	}
+
+	/**
+	 * This method returns the highest latency a bucket holds.
+	 * @param bucket the index of the bucket.
+	 * @return the highest latency in microseconds.
+	 */
+	private static long highest(int bucket)
+	{
+		if(bucket < SUB_BUCKETS)
+			return bucket;
+		int shift = bucket / SUB_BUCKETS - 1;
+		long lowest = (long)(bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+}
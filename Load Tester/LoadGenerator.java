@@ -0,0 +1,245 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This class represents a load generator.
+ * It simulates many users at once, each one running a {@link Script} through the menus of the server over its own session,
+ * again and again until the test is over. Every step is timed from sending its line to receiving the expected answer,
+ * and the latencies of each step are collected in a {@link Histogram}.
+ * The users are started gradually over a ramp-up period, and only what happens after the ramp-up is counted in the report.
+ * Settings, as system properties: load.rampUp (seconds, default 5), load.think (milliseconds between steps, default 0)
+ * and load.report (a file the report is also written to).
+ */
+class LoadGenerator
+{
+	private static final int rampUp = Integer.getInteger("load.rampUp", 5); // The time, in seconds, over which the users are started
+	private static final int think = Integer.getInteger("load.think", 0); // The time, in milliseconds, a user waits between two steps
+	private static final String reportPath = System.getProperty("load.report"); // A file the report is also written to
+
+	/**
+	 * This class represents a simulated user. It keeps its own counts, so users never wait for each other while recording.
+	 */
+	private static class User implements Runnable
+	{
+		private final int number;
+		private final String url;
+		private final int port;
+		private final Script script;
+		private final long startTime; // When the user starts, in nanoseconds
+		private final long recordFrom; // When recording starts, in nanoseconds
+		private final long recordTo; // When the test is over, in nanoseconds
+		private final Histogram[] latencies; // The latencies of each step
+		private final long[][] answers; // How many times each step received each of its expected answers
+		private final long[] failures; // How many times each step failed, because the session broke or the server stopped answering
+		private long completed = 0; // How many times the user ran the whole script
+
+		private User(int number, String url, int port, Script script, long startTime, long recordFrom, long recordTo)
+		{
+			this.number = number;
+			this.url = url;
+			this.port = port;
+			this.script = script;
+			this.startTime = startTime;
+			this.recordFrom = recordFrom;
+			this.recordTo = recordTo;
+			int steps = script.steps.size();
+			this.latencies = new Histogram[steps];
+			this.answers = new long[steps][];
+			this.failures = new long[steps];
+			for(int i = 0; i < steps; ++i)
+			{
+				this.latencies[i] = new Histogram();
+				this.answers[i] = new long[script.steps.get(i).expected.length];
+			}
+		}
+
+		/**
+		 * This method checks whether something that happened at a time is counted in the report.
+		 * @param time the time in nanoseconds.
+		 * @return true if the time falls after the ramp-up and before the end of the test.
+		 */
+		private boolean recording(long time)
+		{
+			return time - this.recordFrom >= 0 && time - this.recordTo < 0;
+		}
+
+		@Override
+		public void run()
+		{
+			Random random = new Random(this.number);
+			try
+			{
+				long wait = this.startTime - System.nanoTime();
+				if(wait > 0)
+					Thread.sleep(wait / 1000000, (int)(wait % 1000000));
+			}
+			catch (InterruptedException e)
+			{
+				return;
+			}
+
+			for(long iteration = 0; System.nanoTime() - this.recordTo < 0; ++iteration)
+			{
+				Session session = null;
+				int position = 0;
+				long started = System.nanoTime();
+				try
+				{
+					while(position < this.script.steps.size() && System.nanoTime() - this.recordTo < 0)
+					{
+						Script.Step step = this.script.steps.get(position);
+						String line = Script.fill(step.line, this.number, iteration, random);
+						long start = System.nanoTime();
+						if(session == null) // The first step opens the session
+							session = new Session(this.url, this.port);
+						if(!line.isEmpty())
+							session.send(line);
+						int answer = session.expect(step.expected);
+						long end = System.nanoTime();
+						if(recording(start))
+						{
+							this.latencies[position].record(end - start);
+							++this.answers[position][answer];
+						}
+						position = step.next[answer];
+						if(think > 0)
+							Thread.sleep(think);
+					}
+					if(position >= this.script.steps.size() && recording(started))
+						++this.completed;
+				}
+				catch (IOException | InterruptedException e)
+				{
+					if(recording(System.nanoTime()))
+						++this.failures[position];
+				}
+				finally
+				{
+					try
+					{
+						if(session != null)
+							session.close();
+					}
+					catch (IOException ignored)
+					{
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * This method runs the users until the test is over and reports what happened.
+	 * @param url the address of the server.
+	 * @param port the port of the server.
+	 * @param users the number of users to simulate.
+	 * @param seconds how long the test lasts after the ramp-up.
+	 * @param script the script the users run.
+	 * @param name how the script is named in the report.
+	 */
+	static void run(String url, int port, int users, int seconds, Script script, String name) throws Exception
+	{
+		long start = System.nanoTime();
+		long recordFrom = start + rampUp * 1000000000L;
+		long recordTo = recordFrom + seconds * 1000000000L;
+		List<User> simulated = new ArrayList<>();
+		List<Thread> threads = new ArrayList<>();
+		for(int i = 0; i < users; ++i)
+		{
+			User user = new User(i + 1, url, port, script, start + rampUp * 1000000000L * i / users, recordFrom, recordTo);
+			Thread thread = new Thread(null, user, "User " + (i + 1), 256 * 1024); // A small stack, so that thousands of users fit
+			thread.setDaemon(true);
+			thread.start();
+			simulated.add(user);
+			threads.add(thread);
+		}
+		System.out.println("Started " + users + " users, ramping up for " + rampUp + " s and measuring for " + seconds + " s");
+		for(Thread thread : threads)
+			thread.join();
+
+		String report = report(users, seconds, script, name, simulated);
+		System.out.print(report);
+		if(reportPath != null)
+			Files.writeString(Paths.get(reportPath), report);
+	}
+
+	/**
+	 * This method merges the counts of the users into a report.
+	 * @param users the number of users.
+	 * @param seconds how long the test was measured.
+	 * @param script the script the users ran.
+	 * @param name how the script is named in the report.
+	 * @param simulated the users.
+	 * @return the report.
+	 */
+	private static String report(int users, int seconds, Script script, String name, List<User> simulated)
+	{
+		int steps = script.steps.size();
+		Histogram[] latencies = new Histogram[steps];
+		long[][] answers = new long[steps][];
+		long[] failures = new long[steps];
+		long completed = 0;
+		for(int i = 0; i < steps; ++i)
+		{
+			latencies[i] = new Histogram();
+			answers[i] = new long[script.steps.get(i).expected.length];
+		}
+		for(User user : simulated)
+		{
+			for(int i = 0; i < steps; ++i)
+			{
+				latencies[i].add(user.latencies[i]);
+				for(int a = 0; a < answers[i].length; ++a)
+					answers[i][a] += user.answers[i][a];
+				failures[i] += user.failures[i];
+			}
+			completed += user.completed;
+		}
+
+		Histogram all = new Histogram();
+		long failed = 0;
+		for(int i = 0; i < steps; ++i)
+		{
+			all.add(latencies[i]);
+			failed += failures[i];
+		}
+
+		StringWriter text = new StringWriter();
+		PrintWriter report = new PrintWriter(text);
+		report.println();
+		report.printf("Load test: %d users running %s for %d s after a ramp-up of %d s%n", users, name, seconds, rampUp);
+		report.printf("Scripts completed: %d (%.1f/s), failed: %d%n", completed, completed / (double)seconds, failed);
+		report.printf("Steps answered:    %d (%.1f/s)%n", all.count(), all.count() / (double)seconds);
+		report.println();
+		report.printf("%-14s %9s %7s %9s %9s %9s %9s %9s %9s  %s%n", "Step", "Count", "Failed", "Mean", "p50", "p90", "p99", "p99.9", "Max", "Other answers");
+		for(int i = 0; i < steps; ++i)
+			row(report, script.steps.get(i), latencies[i], failures[i], answers[i]);
+		row(report, null, all, failed, new long[0]);
+		report.println("(latencies in milliseconds)");
+		report.flush();
+		return text.toString();
+	}
+
+	/**
+	 * This method writes the line of a step in the report.
+	 * @param report where the line is written.
+	 * @param step the step, or null for the line of every step together.
+	 * @param latencies the latencies of the step.
+	 * @param failures how many times the step failed.
+	 * @param answers how many times the step received each of its expected answers.
+	 */
+	private static void row(PrintWriter report, Script.Step step, Histogram latencies, long failures, long[] answers)
+	{
+		StringBuilder other = new StringBuilder(); // The answers that are not the first one, which usually means the step did not go as planned
+		for(int a = 1; a < answers.length; ++a)
+			if(answers[a] > 0)
+				other.append(step.expected[a]).append(' ').append(answers[a]).append("  ");
+		report.printf("%-14s %9d %7d %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f  %s%n", step != null ? step.name : "all", latencies.count(), failures,
+				latencies.mean() / 1000.0, latencies.percentile(50) / 1000.0, latencies.percentile(90) / 1000.0, latencies.percentile(99) / 1000.0,
+				latencies.percentile(99.9) / 1000.0, latencies.max() / 1000.0, other.toString().trim());
+	}
+}
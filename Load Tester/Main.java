@@ -0,0 +1,58 @@
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class represents a load tester.
+ * It opens many sessions to the hotel server at the same time and keeps them all connected, to show how many concurrent clients the server can hold.
+ * Given a script, it instead simulates users running the script through the menus of the server and reports the latency of every step, see {@link LoadGenerator}.
+ */
+public class Main
+{
+	/**
+	 * This method opens the sessions, selects a hotel in each one of them and finally disconnects them all.
+	 * @param url the address of the server.
+	 * @param port the port of the server.
+	 * @param sessions the number of sessions to open.
+	 */
+	public static void run(String url, int port, int sessions) throws Exception
+	{
+		List<Session> open = new ArrayList<>();
+
+		long start = System.nanoTime();
+		for(int i = 0; i < sessions; ++i) // Open every session and wait for its landing page
+		{
+			Session session = new Session(url, port);
+			session.expect("Select Hotel: ");
+			open.add(session);
+		}
+		System.out.println("Opened " + open.size() + " concurrent sessions in " + (System.nanoTime() - start) / 1000000 + " ms");
+
+		start = System.nanoTime();
+		for(Session session : open) // While all the sessions are connected, select a hotel in each one of them
+		{
+			session.send("1");
+			session.expect("Select Option: ");
+		}
+		System.out.println("Selected a hotel in " + open.size() + " concurrent sessions in " + (System.nanoTime() - start) / 1000000 + " ms");
+
+		start = System.nanoTime();
+		for(Session session : open) // Quit every session
+		{
+			session.send("0");
+			session.expect("Disconnected");
+			session.close();
+		}
+		System.out.println("Disconnected " + open.size() + " sessions in " + (System.nanoTime() - start) / 1000000 + " ms");
+	}
+
+	public static void main(String ... args) throws Exception
+	{
+		if(args.length == 3)
+			run(args[0], Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+		else if(args.length == 5)
+			LoadGenerator.run(args[0], Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]), Script.load(Paths.get(args[4])), args[4]);
+		else // If the URL, port and number of sessions or users are not passed when calling this class, an exception is thrown.
+			throw new Exception("Expected 3 or 5 arguments, found " + args.length + ". Proper Usage: java Main {url} {port} {sessions} or java Main {url} {port} {users} {seconds} {script}");
+	}
+}
@@ -0,0 +1,148 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class represents the script a simulated user follows through the menus of the server, from connecting to disconnecting.
+ * Every line of a script file is a step made of three columns separated by |: the name of the step, the line sent to the server and the texts
+ * that can end the answer of the server, separated by ;. The first step is run on a new session and sends nothing if its line is empty.
+ * When the answer ends with a text followed by => and the name of another step, the user goes on with that step, otherwise with the next line.
+ * Blank lines and lines starting with # are ignored.
+ * The line sent can use these variables:
+ *   ${user} the number of the user, ${iteration} how many times the user has run the script before,
+ *   ${random:A:B} a number from A to B, ${date:A:B} the date A to B days from today in the format dd/MM/yyyy.
+ * For example:
+ *   name     | User ${user}   | Enter Contact Information
+ *   duration | ${random:1:3}  | Success: ; Error: => menu
+ */
+class Script
+{
+	private static final Pattern variable = Pattern.compile("\\$\\{(\\w+)(?::(\\d+):(\\d+))?}"); // A variable and the range of its values
+	private static final DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+	/**
+	 * This class represents a single step of a script.
+	 */
+	static class Step
+	{
+		final String name; // How the step is reported
+		final String line; // The line sent to the server, with its variables
+		final String[] expected; // The texts that can end the answer of the server
+		final int[] next; // The step to go on with after each expected text
+
+		private Step(String name, String line, String[] expected, int[] next)
+		{
+			this.name = name;
+			this.line = line;
+			this.expected = expected;
+			this.next = next;
+		}
+	}
+
+	final List<Step> steps = new ArrayList<>();
+
+	/**
+	 * This method reads a script from a file.
+	 * @param file the script file.
+	 * @return the script.
+	 * @throws IOException if the file could not be read or is not a valid script.
+	 */
+	static Script load(Path file) throws IOException
+	{
+		List<String[]> lines = new ArrayList<>();
+		Map<String, Integer> names = new HashMap<>(); // The position of each step
+		for(String line : Files.readAllLines(file))
+		{
+			if(line.isBlank() || line.trim().startsWith("#"))
+				continue;
+			String[] columns = line.split("\\|", -1);
+			if(columns.length != 3)
+				throw new IOException("Expected 3 columns separated by | in the script line \"" + line + "\"");
+			String name = columns[0].trim();
+			if(names.putIfAbsent(name, lines.size()) != null)
+				throw new IOException("The script has two steps named " + name);
+			lines.add(columns);
+		}
+		if(lines.isEmpty())
+			throw new IOException("The script " + file + " has no steps");
+
+		Script script = new Script();
+		for(int position = 0; position < lines.size(); ++position)
+		{
+			String[] columns = lines.get(position);
+			String[] choices = columns[2].split(";");
+			String[] expected = new String[choices.length];
+			int[] next = new int[choices.length];
+			for(int i = 0; i < choices.length; ++i)
+			{
+				String[] jump = choices[i].split("=>");
+				expected[i] = jump[0].trim();
+				next[i] = position + 1;
+				if(jump.length > 1)
+				{
+					Integer target = names.get(jump[1].trim());
+					if(target == null)
+						throw new IOException("The script has no step named " + jump[1].trim());
+					next[i] = target;
+				}
+				if(expected[i].isEmpty())
+					throw new IOException("The step " + columns[0].trim() + " expects an empty text");
+			}
+			try
+			{
+				fill(columns[1].trim(), 0, 0, new Random()); // Check the variables once, rather than on every run of the step
+			}
+			catch (IllegalArgumentException exception)
+			{
+				throw new IOException("The step " + columns[0].trim() + " cannot be sent: " + exception.getMessage());
+			}
+			script.steps.add(new Step(columns[0].trim(), columns[1].trim(), expected, next));
+		}
+		return script;
+	}
+
+	/**
+	 * This method replaces the variables of the line of a step with their values.
+	 * @param line the line with variables.
+	 * @param user the number of the user.
+	 * @param iteration how many times the user has run the script before.
+	 * @param random the source of the random values of the user.
+	 * @return the line to be sent.
+	 */
+	static String fill(String line, int user, long iteration, Random random)
+	{
+		if(line.indexOf('$') < 0)
+			return line;
+		Matcher matcher = variable.matcher(line);
+		StringBuilder filled = new StringBuilder();
+		while(matcher.find())
+		{
+			String name = matcher.group(1);
+			int from = matcher.group(2) != null ? Integer.parseInt(matcher.group(2)) : 0;
+			int to = matcher.group(3) != null ? Integer.parseInt(matcher.group(3)) : 0;
+			String value;
+			if(name.equals("user"))
+				value = String.valueOf(user);
+			else if(name.equals("iteration"))
+				value = String.valueOf(iteration);
+			else if(name.equals("random"))
+				value = String.valueOf(from + random.nextInt(to - from + 1));
+			else if(name.equals("date"))
+				value = LocalDate.now().plusDays(from + random.nextInt(to - from + 1)).format(dateFormat);
+			else
+				throw new IllegalArgumentException("Unknown variable " + matcher.group());
+			matcher.appendReplacement(filled, Matcher.quoteReplacement(value));
+		}
+		matcher.appendTail(filled);
+		return filled.toString();
+	}
+}
@@ -0,0 +1,64 @@
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class represents a single session to the server.
+ */
+class Session implements Closeable
+{
+	private final Socket socket;
+	private final InputStream in; // For receiving messages from the server
+	private final OutputStream out; // For sending messages to the server
+	private final byte[] buffer = new byte[8192]; // For reading the messages of the server
+
+	Session(String url, int port) throws IOException
+	{
+		this.socket = new Socket(url, port);
+		this.socket.setSoTimeout(30000); // Give up on a server that stops answering
+		this.socket.setTcpNoDelay(true); // Send every line at once, since each one is answered before the next is sent
+		this.in = this.socket.getInputStream();
+		this.out = this.socket.getOutputStream();
+	}
+
+	/**
+	 * This method sends a line to the server.
+	 * @param line the line to be sent.
+	 */
+	void send(String line) throws IOException
+	{
+		this.out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+		this.out.flush();
+	}
+
+	/**
+	 * This method reads the messages from the server until one of the expected texts arrives.
+	 * @param expected the texts that can end the message, usually prompts.
+	 * @return the position of the text that arrived first among the expected texts.
+	 */
+	int expect(String ... expected) throws IOException
+	{
+		StringBuilder message = new StringBuilder();
+		int longest = 0;
+		for(String text : expected)
+			longest = Math.max(longest, text.length());
+		int searched = 0; // Everything before this position has already been searched, so long listings are not searched over and over
+		while(true)
+		{
+			for(int i = 0; i < expected.length; ++i)
+				if(message.indexOf(expected[i], searched) >= 0)
+					return i;
+			searched = Math.max(0, message.length() - longest + 1);
+			int read = this.in.read(this.buffer);
+			if(read < 0)
+				throw new IOException("The server closed the session before sending \"" + String.join("\" or \"", expected) + "\"");
+			message.append(new String(this.buffer, 0, read, StandardCharsets.UTF_8));
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		this.socket.close();
+	}
+}
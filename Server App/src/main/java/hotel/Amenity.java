@@ -0,0 +1,58 @@
+package hotel;
+
+import java.util.Locale;
+
+/**
+ * This enum lists the amenities a room can include. The amenities of a room are read from its description once,
+ * when the description enters the dictionary, and are kept as a bitmask with one bit per amenity, so that filtering rooms by amenity never reads their descriptions.
+ */
+public enum Amenity
+{
+    BREAKFAST("Breakfast", "breakfast"),
+    WIFI("Free Wi-Fi", "wi-fi"),
+    PARKING("Free Parking", "parking"),
+    SEA_VIEW("Sea View", "sea view"),
+    POOL("Pool Access", "pool");
+
+    private final String label; // How the amenity is shown to a client
+    private final String keyword; // The words that mention the amenity in a description, in lower case
+
+    Amenity(String label, String keyword)
+    {
+        this.label = label;
+        this.keyword = keyword;
+    }
+
+    /**
+     * This method returns the bit of this amenity in a bitmask of amenities.
+     * @return the bit of the amenity.
+     */
+    public int bit()
+    {
+        return 1 << ordinal();
+    }
+
+    /**
+     * This method returns how this amenity is shown to a client.
+     * @return the label of the amenity.
+     */
+    public String getLabel()
+    {
+        return this.label;
+    }
+
+    /**
+     * This method finds the amenities that a description mentions.
+     * @param description the description of a room.
+     * @return the bitmask of the amenities.
+     */
+    public static int parse(String description)
+    {
+        String text = description.toLowerCase(Locale.ROOT);
+        int amenities = 0;
+        for(Amenity amenity : values())
+            if(text.contains(amenity.keyword))
+                amenities |= amenity.bit();
+        return amenities;
+    }
+}
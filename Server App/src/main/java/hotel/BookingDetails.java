@@ -1,32 +1,45 @@
 package hotel;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
 import java.util.Date;
 
 /**
  * This class is used to represent the details of the booking of a room.
+ * A booking covers the nights from its start date up to, but not including, its start date plus its duration.
+ * Dates are stored as days since 1970-01-01. The details never change once created.
  */
 public class BookingDetails
 {
-    public String customerName; // The name of the customer who booked the room
-    public int DurationInDays; // The duration, in days, for which the room will be booked
-    public long timeStamp; // The current time the room was booked
+    protected static final String anonymous = "Anonymous"; // The name of bookings loaded from older data files, which did not save customer names. Nobody may book or cancel under it
+    protected static final int maxNameLength = 200; // The longest name a customer may book under
+    protected static final DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("dd/MM/yyyy"); // The format in which dates are displayed
+    private static final DateTimeFormatter inputFormat = DateTimeFormatter.ofPattern("dd/MM/uuuu").withResolverStyle(ResolverStyle.STRICT); // The format in which clients enter dates; only dates that exist are accepted
 
-    public BookingDetails(String customerName, int DurationInDays, long timeStamp)
+    public final String customerName; // The name of the customer who booked the room
+    public final int startDate; // The first night of the booking
+    public final int DurationInDays; // The duration, in days, for which the room will be booked
+    public final long timeStamp; // The current time the room was booked
+
+    public BookingDetails(String customerName, int startDate, int DurationInDays, long timeStamp)
     {
         this.customerName = customerName;
+        this.startDate = startDate;
         this.DurationInDays = DurationInDays;
         this.timeStamp = timeStamp;
     }
 
-    public BookingDetails()
+    public BookingDetails(String customerName, int DurationInDays, long timeStamp)
     {
-        this.customerName = "";
-        this.DurationInDays = 0;
-        this.timeStamp = 0;
+        this(customerName, BookingDetails.day(timeStamp), DurationInDays, timeStamp);
     }
 
     /**
-     * This method is used to check if the room containing these details is already booked.
+     * This method is used to check if these details describe an actual booking.
      * @return the booking status of the room.
      */
     public boolean isBooked()
@@ -35,13 +48,69 @@ public class BookingDetails
     }
 
     /**
-     * This method clears the booking of the room that contains these details.
+     * This method returns the day after the last night of the booking.
+     * @return the day the customer leaves.
+     */
+    public int endDate()
+    {
+        return this.startDate + this.DurationInDays;
+    }
+
+    /**
+     * This method checks that a stay may be booked or searched. The occupancy of a hotel keeps a bitmap for every night booked
+     * and a search reads one for every night, so the number of nights is limited by hotel.maxStay.
+     * The occupancy also forgets the nights that have passed, so a stay may not start before today.
+     * @param startDate the first night, in days since 1970-01-01.
+     * @param duration the number of nights.
+     * @throws IllegalArgumentException if the stay starts before today, is shorter than one night, longer than hotel.maxStay nights or ends after the last day that can be stored.
+     */
+    public static void checkStay(int startDate, int duration)
+    {
+        if(startDate < BookingDetails.today())
+            throw new IllegalArgumentException("The stay cannot start before today");
+        if(duration <= 0)
+            throw new IllegalArgumentException("The duration must be at least 1 day");
+        if(duration > Config.maxStay)
+            throw new IllegalArgumentException("The duration may be at most " + Config.maxStay + " days");
+        if(startDate > Integer.MAX_VALUE - duration)
+            throw new IllegalArgumentException("The stay ends too far in the future");
+    }
+
+    /**
+     * This method returns the current day.
+     * @return the number of days since 1970-01-01.
+     */
+    public static int today()
+    {
+        return (int) LocalDate.now().toEpochDay();
+    }
+
+    /**
+     * This method returns the day on which a moment in time falls.
+     * @param timeStamp the moment in time, in milliseconds.
+     * @return the number of days since 1970-01-01.
+     */
+    public static int day(long timeStamp)
+    {
+        return (int) Instant.ofEpochMilli(timeStamp).atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+
+    /**
+     * This method converts a date entered by a client into a day.
+     * @param date the date in the format dd/MM/yyyy.
+     * @return the number of days since 1970-01-01.
+     * @throws IllegalArgumentException if the date is not in this format or does not exist, e.g. 31/02/2026.
      */
-    public void clear()
+    public static int day(String date)
     {
-        this.customerName = "";
-        this.DurationInDays = 0;
-        this.timeStamp = 0;
+        try
+        {
+            return Math.toIntExact(LocalDate.parse(date.trim(), BookingDetails.inputFormat).toEpochDay());
+        }
+        catch (DateTimeParseException | ArithmeticException exception)
+        {
+            throw new IllegalArgumentException("Invalid date " + date.trim() + ", expected dd/MM/yyyy");
+        }
     }
 
     /**
@@ -52,6 +121,7 @@ public class BookingDetails
     public String toString()
     {
        return "Customer Name ("  + this.customerName
+               + ") Start Date (" + LocalDate.ofEpochDay(this.startDate).format(BookingDetails.dateFormat)
                + ") Duration In Days (" + this.DurationInDays
                + ") Date Booked (" + new Date(this.timeStamp) + ")";
     }
@@ -0,0 +1,232 @@
+package hotel;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class is used to serve the command protocol, next to the menus and whatever the mode of the server.
+ * Where the menus walk a client through pages, the command protocol answers every operation in one round trip:
+ * the client sends a request line and receives a response whose header gives the exact length of its body, see {@link Commands}.
+ * A client may send many requests without waiting for their responses. Untagged requests are answered in order; tagged requests
+ * are answered as soon as they are done, with reads running at the same time as each other, see {@link Pipeline}.
+ */
+public class CommandServer
+{
+    /**
+     * This method starts accepting clients of the command protocol on a thread of its own, unless the protocol is disabled.
+     */
+    protected static void start()
+    {
+        if(Config.commandPort <= 0)
+            return;
+        ServerSocket serverSocket;
+        try
+        {
+            serverSocket = new ServerSocket(Config.commandPort, Config.backlog, InetAddress.getByName("127.0.0.1"));
+        }
+        catch (IOException exception)
+        {
+            exception.printStackTrace(); // The server runs on with the menus only
+            return;
+        }
+
+        ExecutorService executor = SessionPool.virtualThreads(); // Clients of the protocol run on virtual threads when the JDK supports them
+        ExecutorService clients = executor != null ? executor : Executors.newCachedThreadPool();
+        Thread thread = new Thread(() -> {
+            while(true)
+            {
+                try
+                {
+                    Socket client = serverSocket.accept();
+                    clients.execute(() -> CommandServer.serve(client, clients));
+                }
+                catch (IOException exception)
+                {
+                    exception.printStackTrace();
+                }
+            }
+        }, "Command Server");
+        thread.setDaemon(true);
+        thread.start();
+        System.out.println("Command Protocol Is Available On Port " + Config.commandPort);
+    }
+
+    /**
+     * This class is used to represent the requests of a client that are still running.
+     * Untagged requests run one at a time on the thread reading the client, after every earlier request, and are answered in order.
+     * Tagged requests run on the executor and are answered as soon as they are done: reads (LIST_HOTELS, SEARCH and SEARCH_ALL) run at the same time as each other,
+     * while a change (BOOK or CANCEL) waits for every earlier request of the client and is waited for by every later one,
+     * so a client always sees its own changes. Responses are flushed once nothing of the client is running or waiting to be read.
+     */
+    private static class Pipeline
+    {
+        private final OutputStream writer; // For sending responses to the client, shared by every request
+        private final ExecutorService executor; // Where tagged requests run
+        private final Semaphore depth = new Semaphore(Config.pipelineDepth); // One permit for each tagged request that may be running
+        private final AtomicInteger busy = new AtomicInteger(); // The number of tagged requests running, plus one while requests are being read
+        private CompletableFuture<Void> changes = CompletableFuture.completedFuture(null); // Completes once the last change and everything before it are done
+        private final List<CompletableFuture<Void>> reads = new ArrayList<>(); // The reads since the last change
+
+        private Pipeline(OutputStream writer, ExecutorService executor)
+        {
+            this.writer = writer;
+            this.executor = executor;
+        }
+
+        /**
+         * This method runs a request, or schedules it if it is tagged. It is only called by the thread reading the client.
+         * @param request the request.
+         * @throws InterruptedException if the thread is interrupted while the pipeline is full.
+         */
+        private void submit(String request) throws InterruptedException
+        {
+            String tag = Commands.tag(request);
+            String command = Commands.untagged(request, tag);
+            if(tag == null) // Run it here, once everything before it is done
+            {
+                all().join();
+                respond(Commands.execute(command, null));
+                return;
+            }
+
+            this.depth.acquire(); // Stop reading the client while too many of its requests are running
+            this.busy.incrementAndGet();
+            Runnable task = () -> {
+                try
+                {
+                    respond(Commands.execute(command, tag));
+                }
+                finally
+                {
+                    this.depth.release();
+                    done();
+                }
+            };
+            if(Commands.isRead(command))
+            {
+                if(this.reads.size() >= Config.pipelineDepth)
+                    this.reads.removeIf(CompletableFuture::isDone);
+                this.reads.add(this.changes.thenRunAsync(task, this.executor));
+            }
+            else
+            {
+                this.changes = all().thenRunAsync(task, this.executor);
+                this.reads.clear();
+            }
+        }
+
+        /**
+         * This method returns a future that completes once every request submitted so far is done.
+         * @return the future.
+         */
+        private CompletableFuture<Void> all()
+        {
+            List<CompletableFuture<Void>> running = new ArrayList<>(this.reads);
+            running.add(this.changes);
+            return CompletableFuture.allOf(running.toArray(new CompletableFuture<?>[0]));
+        }
+
+        /**
+         * This method marks the start of a run of requests read from the client, so that their responses are not flushed one by one.
+         */
+        private void reading()
+        {
+            this.busy.incrementAndGet();
+        }
+
+        /**
+         * This method marks the end of a request or of a run of requests read from the client, and flushes the responses if nothing else is running.
+         */
+        private void done()
+        {
+            if(this.busy.decrementAndGet() == 0)
+            {
+                synchronized(this.writer)
+                {
+                    try
+                    {
+                        this.writer.flush();
+                    }
+                    catch (IOException ignored) // The client has gone
+                    {
+                    }
+                }
+            }
+        }
+
+        /**
+         * This method writes a response.
+         * @param response the framed response.
+         */
+        private void respond(byte[] response)
+        {
+            synchronized(this.writer)
+            {
+                try
+                {
+                    this.writer.write(response);
+                }
+                catch (IOException ignored) // The client has gone
+                {
+                }
+            }
+        }
+    }
+
+    /**
+     * This method answers the requests of a client until it disconnects.
+     * @param client the socket of the client.
+     * @param executor where the tagged requests of the client run.
+     */
+    private static void serve(Socket client, ExecutorService executor)
+    {
+        try(Socket socket = client)
+        {
+            socket.setTcpNoDelay(true); // Responses are already gathered before they are written
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            Pipeline pipeline = new Pipeline(new BufferedOutputStream(socket.getOutputStream()), executor);
+            boolean reading = false; // Whether a run of requests is being read
+            String request;
+            while((request = reader.readLine()) != null)
+            {
+                if(!reading)
+                {
+                    pipeline.reading();
+                    reading = true;
+                }
+                if(!request.isBlank())
+                    pipeline.submit(request);
+                if(!reader.ready()) // Only send the responses once every request that has arrived has been answered
+                {
+                    pipeline.done();
+                    reading = false;
+                }
+            }
+            pipeline.all().join(); // Answer everything before the socket is closed
+            if(reading)
+                pipeline.done();
+            else
+            {
+                pipeline.reading();
+                pipeline.done(); // Flush whatever the last request wrote
+            }
+        }
+        catch (IOException | InterruptedException ignored) // The client has gone
+        {
+        }
+    }
+}
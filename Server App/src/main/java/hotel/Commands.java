@@ -0,0 +1,333 @@
+package hotel;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * This class is used to execute the requests of the command protocol, see {@link CommandServer}.
+ * A request is a single line: the name of a command followed by its arguments, separated by spaces. The last argument of BOOK and CANCEL,
+ * the name of the customer, and of SEARCH_ALL, the location, takes the rest of the line and may itself contain spaces.
+ * Hotels and rooms are given by their ids, which start at 0, and dates are written as yyyy-MM-dd.
+ *   LIST_HOTELS
+ *   SEARCH {hotel} {max price} {beds} {first night} {nights}
+ *   SEARCH_ALL {max price} {beds} {first night} {nights} {PRICE or RATING} {limit} {location, or * for any}
+ *   BOOK {hotel} {room} {first night} {nights} {email} {name}
+ *   CANCEL {hotel} {room} {name}
+ * The response is a header line, "OK {length}" or "ERR {length}", followed by a body of exactly that many bytes of UTF-8.
+ * The body of OK holds one row per line with tab-separated fields:
+ *   LIST_HOTELS: id, name, location, ratings, number of rooms
+ *   SEARCH: room, price, beds, amenities (comma-separated, see Amenity), description; the free rooms, sorted by price
+ *   SEARCH_ALL: hotel, hotel name, location, ratings, then the fields of SEARCH; the best free rooms of every hotel, see HotelSearch
+ *   BOOK: hotel, room, first night, nights
+ *   CANCEL: hotel, room
+ * The body of ERR is a message describing what went wrong.
+ * A request may start with a tag, # followed by any word, e.g. "#17 SEARCH 0 200 2 2030-06-01 3"; its response header then ends with the same tag,
+ * e.g. "OK 120 #17", so that responses can be matched to requests when they come back out of order.
+ */
+public class Commands
+{
+    /**
+     * This method returns the tag of a request.
+     * @param request the request.
+     * @return the tag, including its #, or null if the request is not tagged.
+     */
+    protected static String tag(String request)
+    {
+        String trimmed = request.trim();
+        return trimmed.startsWith("#") ? trimmed.split(" ", 2)[0] : null;
+    }
+
+    /**
+     * This method checks whether a request only reads the hotels, so that it may run at the same time as other reads.
+     * @param request the request, without its tag.
+     * @return true if the request is a LIST_HOTELS, a SEARCH or a SEARCH_ALL.
+     */
+    protected static boolean isRead(String request)
+    {
+        String command = request.trim().split(" ", 2)[0].toUpperCase();
+        return command.equals("LIST_HOTELS") || command.equals("SEARCH") || command.equals("SEARCH_ALL");
+    }
+
+    /**
+     * This method removes the tag of a request.
+     * @param request the request.
+     * @param tag the tag of the request, or null if it is not tagged.
+     * @return the request without its tag.
+     */
+    protected static String untagged(String request, String tag)
+    {
+        if(tag == null)
+            return request;
+        String[] words = request.trim().split(" ", 2);
+        return words.length > 1 ? words[1] : "";
+    }
+
+    /**
+     * This method executes a request and frames its response.
+     * @param request the request, without its tag or line ending.
+     * @param tag the tag of the request, or null if it is not tagged.
+     * @return the framed response.
+     */
+    protected static byte[] execute(String request, String tag)
+    {
+        long start = Metrics.start();
+        String status = "OK";
+        String body;
+        try
+        {
+            String command = request.trim().split(" ", 2)[0].toUpperCase();
+            if(command.equals("LIST_HOTELS"))
+                body = listHotels();
+            else if(command.equals("SEARCH"))
+                body = search(arguments(request, 6));
+            else if(command.equals("SEARCH_ALL"))
+                body = searchAll(arguments(request, 8));
+            else if(command.equals("BOOK"))
+                body = book(arguments(request, 7));
+            else if(command.equals("CANCEL"))
+                body = cancel(arguments(request, 4));
+            else
+                throw new IllegalArgumentException("Unknown command " + command);
+        }
+        catch (Exception exception)
+        {
+            status = "ERR";
+            body = exception.getMessage() != null ? exception.getMessage() : exception.toString();
+        }
+        byte[] response = frame(status, body, tag);
+        Metrics.command.record(start);
+        return response;
+    }
+
+    /**
+     * This method lists the hotels of the server.
+     * @return the body of the response.
+     */
+    private static String listHotels()
+    {
+        StringBuilder body = new StringBuilder();
+        List<Hotel> hotels = Hotel.getHotels();
+        for(int id = 0; id < hotels.size(); ++id)
+        {
+            Hotel hotel = hotels.get(id);
+            row(body, String.valueOf(id), hotel.getName(), hotel.getLocation(), String.valueOf(hotel.getRatings()), String.valueOf(hotel.getRooms().size()));
+        }
+        return body.toString();
+    }
+
+    /**
+     * This method finds the free rooms of a hotel with at most a price and a number of beds.
+     * @param arguments the command, hotel, highest price, number of beds, first night and number of nights.
+     * @return the body of the response.
+     */
+    private static String search(String[] arguments)
+    {
+        Hotel hotel = hotel(arguments[1]);
+        int price = number(arguments[2], "price");
+        int beds = number(arguments[3], "number of beds");
+        int from = day(arguments[4]);
+        int nights = number(arguments[5], "number of nights");
+        BookingDetails.checkStay(from, nights);
+
+        StringBuilder body = new StringBuilder();
+        for(Room room : hotel.search(price, beds, from, from + nights))
+            row(body, String.valueOf(room.number), String.valueOf(room.price), String.valueOf(room.numberOfBeds), amenities(room), room.getDescription());
+        return body.toString();
+    }
+
+    /**
+     * This method finds the best free rooms of every hotel, or of the hotels in a location.
+     * @param arguments the command, highest price, number of beds, first night, number of nights, order, limit and location.
+     * @return the body of the response.
+     */
+    private static String searchAll(String[] arguments)
+    {
+        int price = number(arguments[1], "price");
+        int beds = number(arguments[2], "number of beds");
+        int from = day(arguments[3]);
+        int nights = number(arguments[4], "number of nights");
+        BookingDetails.checkStay(from, nights);
+        HotelSearch.Order order;
+        try
+        {
+            order = HotelSearch.Order.valueOf(arguments[5].toUpperCase());
+        }
+        catch (IllegalArgumentException exception)
+        {
+            throw new IllegalArgumentException("Invalid order " + arguments[5] + ", expected PRICE or RATING");
+        }
+        int limit = number(arguments[6], "limit");
+        String location = arguments[7].trim().equals("*") ? null : arguments[7].trim();
+
+        StringBuilder body = new StringBuilder();
+        for(Room room : HotelSearch.search(location, price, beds, from, from + nights, order, limit))
+            row(body, String.valueOf(room.hotel.id), room.hotel.getName(), room.hotel.getLocation(), String.valueOf(room.hotel.getRatings()),
+                    String.valueOf(room.number), String.valueOf(room.price), String.valueOf(room.numberOfBeds), amenities(room), room.getDescription());
+        return body.toString();
+    }
+
+    /**
+     * This method lists the amenities of a room.
+     * @param room the room.
+     * @return the names of the amenities, separated by commas.
+     */
+    private static String amenities(Room room)
+    {
+        StringBuilder amenities = new StringBuilder();
+        for(Amenity amenity : Amenity.values())
+            if((room.getAmenities() & amenity.bit()) != 0)
+                amenities.append(amenities.length() > 0 ? "," : "").append(amenity.name());
+        return amenities.toString();
+    }
+
+    /**
+     * This method books a room and returns once the booking has been saved.
+     * @param arguments the command, hotel, room, first night, number of nights, email and name.
+     * @return the body of the response.
+     * @throws Exception if the room has already been booked for any of these nights.
+     */
+    private static String book(String[] arguments) throws Exception
+    {
+        Hotel hotel = hotel(arguments[1]);
+        Room room = room(hotel, arguments[2]);
+        int from = day(arguments[3]);
+        int nights = number(arguments[4], "number of nights");
+        BookingDetails.checkStay(from, nights);
+        if(!arguments[5].matches("^(.+)@(.+)$"))
+            throw new IllegalArgumentException("Invalid email address " + arguments[5]);
+        hotel.book(arguments[6], arguments[5], from, nights, room);
+
+        StringBuilder body = new StringBuilder();
+        row(body, arguments[1], arguments[2], LocalDate.ofEpochDay(from).toString(), String.valueOf(nights));
+        return body.toString();
+    }
+
+    /**
+     * This method removes every booking a customer made for a room.
+     * @param arguments the command, hotel, room and name.
+     * @return the body of the response.
+     * @throws Exception if the customer made no booking for the room.
+     */
+    private static String cancel(String[] arguments) throws Exception
+    {
+        Hotel hotel = hotel(arguments[1]);
+        hotel.deleteBooking(arguments[3], room(hotel, arguments[2]));
+
+        StringBuilder body = new StringBuilder();
+        row(body, arguments[1], arguments[2]);
+        return body.toString();
+    }
+
+    /**
+     * This method splits a request into its command and arguments. The last argument takes the rest of the request.
+     * @param request the request.
+     * @param count the number of words expected, including the command.
+     * @return the command and its arguments.
+     */
+    private static String[] arguments(String request, int count)
+    {
+        String[] words = request.trim().split(" +", count);
+        if(words.length != count || words[count - 1].isBlank())
+            throw new IllegalArgumentException("Expected " + (count - 1) + " arguments for " + words[0].toUpperCase());
+        return words;
+    }
+
+    /**
+     * This method reads a number argument.
+     * @param argument the argument.
+     * @param what what the argument is, for the error message.
+     * @return the number.
+     */
+    private static int number(String argument, String what)
+    {
+        try
+        {
+            return Integer.parseInt(argument);
+        }
+        catch (NumberFormatException exception)
+        {
+            throw new IllegalArgumentException("Invalid " + what + " " + argument);
+        }
+    }
+
+    /**
+     * This method reads a date argument.
+     * @param argument the date in the format yyyy-MM-dd.
+     * @return the number of days since 1970-01-01.
+     */
+    private static int day(String argument)
+    {
+        try
+        {
+            return Math.toIntExact(LocalDate.parse(argument).toEpochDay());
+        }
+        catch (DateTimeParseException | ArithmeticException exception)
+        {
+            throw new IllegalArgumentException("Invalid date " + argument + ", expected yyyy-MM-dd");
+        }
+    }
+
+    /**
+     * This method finds the hotel with an id.
+     * @param argument the id of the hotel.
+     * @return the hotel.
+     */
+    private static Hotel hotel(String argument)
+    {
+        int id = number(argument, "hotel");
+        Hotel hotel = Hotel.getHotel(id);
+        if(hotel == null)
+            throw new IllegalArgumentException("There is no hotel " + id);
+        return hotel;
+    }
+
+    /**
+     * This method finds the room of a hotel with an id.
+     * @param hotel the hotel.
+     * @param argument the id of the room.
+     * @return the room.
+     */
+    private static Room room(Hotel hotel, String argument)
+    {
+        int id = number(argument, "room");
+        List<Room> rooms = hotel.getRooms();
+        if(id < 0 || id >= rooms.size())
+            throw new IllegalArgumentException("There is no room " + id + " in " + hotel.getName());
+        return rooms.get(id);
+    }
+
+    /**
+     * This method adds a row to the body of a response. Tabs and line breaks inside a field are replaced by spaces, so they cannot break the row.
+     * @param body the body of the response.
+     * @param fields the fields of the row.
+     */
+    private static void row(StringBuilder body, String ... fields)
+    {
+        for(int i = 0; i < fields.length; ++i)
+        {
+            if(i > 0)
+                body.append('\t');
+            body.append(fields[i].replace('\t', ' ').replace('\r', ' ').replace('\n', ' '));
+        }
+        body.append('\n');
+    }
+
+    /**
+     * This method frames a response: a header line with the status, the length of the body in bytes and the tag of the request, followed by the body.
+     * @param status OK or ERR.
+     * @param body the body of the response.
+     * @param tag the tag of the request, or null if it is not tagged.
+     * @return the framed response.
+     */
+    protected static byte[] frame(String status, String body, String tag)
+    {
+        byte[] content = body.getBytes(StandardCharsets.UTF_8);
+        byte[] header = (status + " " + content.length + (tag != null ? " " + tag : "") + "\n").getBytes(StandardCharsets.UTF_8);
+        byte[] response = new byte[header.length + content.length];
+        System.arraycopy(header, 0, response, 0, header.length);
+        System.arraycopy(content, 0, response, header.length, content.length);
+        return response;
+    }
+}
@@ -0,0 +1,44 @@
+package hotel;
+
+/**
+ * This class holds the settings of the server.
+ * Every setting has a default value which can be overridden on startup with a system property, e.g. java -Dhotel.compaction=5000 Main
+ */
+public class Config
+{
+    protected static final String mode = System.getProperty("hotel.mode", "threads"); // How the server handles its clients: threads (one thread per client), pool (an executor with a session cap), nio (a single selector thread) or router (forwards clients to the shards, see Router)
+    protected static final int port = Integer.getInteger("hotel.port", 2807); // The local port on which clients connect to the menus
+    protected static final int shards = Math.max(1, Integer.getInteger("hotel.shards", 1)); // The number of server processes the hotels are partitioned across
+    protected static final int shard = Integer.getInteger("hotel.shard", 0); // Which of the shards this server is, from 0; it owns the default hotels whose position modulo hotel.shards is this number
+    protected static final String shardList = System.getProperty("hotel.shardList", ""); // The shards a router forwards clients to, as host:port:commandPort separated by commas
+    protected static final int shardTimeout = Math.max(1, Integer.getInteger("hotel.shardTimeout", 3000)); // The time, in milliseconds, a router waits for a shard to connect or to answer before giving up on it
+    protected static final int shardRefresh = Math.max(100, Integer.getInteger("hotel.shardRefresh", 5000)); // The time, in milliseconds, between the times a router asks every shard for its hotels again
+    protected static final int maxSessions = Integer.getInteger("hotel.maxSessions", 10000); // The number of sessions the server holds at once in pool mode before turning clients away
+    protected static final boolean virtualThreads = Boolean.parseBoolean(System.getProperty("hotel.virtualThreads", "true")); // Whether pool mode runs sessions on virtual threads, when the JDK supports them
+    protected static final int poolThreads = Integer.getInteger("hotel.poolThreads", 200); // The number of platform threads in pool mode when virtual threads are not used
+    protected static final int workers = Integer.getInteger("hotel.workers", 16); // The number of threads that handle client input in nio mode
+    protected static final int backlog = Integer.getInteger("hotel.backlog", 1024); // The number of incoming connections that can wait to be accepted
+    protected static final int compactionThreshold = Integer.getInteger("hotel.compaction", 1000); // The number of journal records after which the journal is compacted into the data file
+    protected static final Journal.Durability durability = Journal.Durability.valueOf(System.getProperty("hotel.durability", "batch").toUpperCase()); // When a change counts as saved: fsync, batch or buffered
+    protected static final int batchSize = Integer.getInteger("hotel.batchSize", 64); // The maximum number of journal records written at once
+    protected static final int batchWindow = Integer.getInteger("hotel.batchWindow", 2); // The time, in milliseconds, the journal waits for more records before writing a batch
+    protected static final int cacheSize = Integer.getInteger("hotel.cacheSize", 256); // The number of rendered listings each hotel keeps
+    protected static final String format = System.getProperty("hotel.format", "binary").toLowerCase(); // The format of the data file: binary (hotels.bin) or text (hotels.txt)
+    protected static final String storage = System.getProperty("hotel.storage", "heap").toLowerCase(); // Where the rooms are kept: heap, or mapped (a memory-mapped file, see MappedStore)
+    protected static final boolean metrics = Boolean.parseBoolean(System.getProperty("hotel.metrics", "true")); // Whether the server times its operations and publishes its metrics, see Metrics
+    protected static final int commandPort = Integer.getInteger("hotel.commandPort", 2809); // The local port of the command protocol, see CommandServer, or 0 for none
+    protected static final int pipelineDepth = Integer.getInteger("hotel.pipelineDepth", 256); // The number of tagged requests of a command protocol client that may run at once
+    protected static final int searchThreads = Integer.getInteger("hotel.searchThreads", Runtime.getRuntime().availableProcessors()); // The number of threads searching the hotels at once when every hotel is searched
+    protected static final int searchLimit = Integer.getInteger("hotel.searchLimit", 20); // The number of rooms shown when a client searches every hotel
+    protected static final int pageSize = Math.max(1, Integer.getInteger("hotel.pageSize", 10)); // The number of hotels listed on each page of the landing page
+    protected static final int maxStay = Math.max(1, Integer.getInteger("hotel.maxStay", 365)); // The number of nights a booking or a search may cover at most
+    protected static final int roomPageSize = Math.max(1, Integer.getInteger("hotel.roomPageSize", 20)); // The number of rooms shown on each page of a listing, see RoomListing
+    protected static final String role = System.getProperty("hotel.role", "primary").toLowerCase(); // primary (takes the bookings and ships them to its replicas) or replica (follows a primary and only serves listings), see Replication
+    protected static final int replicationPort = Integer.getInteger("hotel.replicationPort", 2810); // The local port on which a primary ships its changes to its replicas, or 0 for none
+    protected static final String primaryList = System.getProperty("hotel.primary", "127.0.0.1:2810"); // The primaries a replica may follow, as host:replicationPort separated by commas, tried in turn
+    protected static final boolean failover = Boolean.parseBoolean(System.getProperty("hotel.failover", "false")); // Whether a replica promotes itself to primary once it has lost its primary
+    protected static final int failoverTimeout = Integer.getInteger("hotel.failoverTimeout", 3000); // The time, in milliseconds, without a word from its primary after which a replica has lost it
+    protected static final int heartbeat = Integer.getInteger("hotel.heartbeat", 500); // The time, in milliseconds, between the heartbeats a primary sends to a replica with nothing else to send
+    protected static final int replicationBacklog = Integer.getInteger("hotel.replicationBacklog", 100000); // The number of records a replica may fall behind before its primary drops it, so that it starts over from a snapshot
+    protected static final int metricsPort = Integer.getInteger("hotel.metricsPort", 2808); // The local port on which the metrics are served as plain text, or 0 for none
+}
@@ -1,51 +1,198 @@
 package hotel;
 
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.net.Socket;
-import java.text.ParseException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.regex.*;
-import java.text.SimpleDateFormat;
 
 /**
  * This class represents a connection to the server and is used to interact with the server.
+ * The pages of the server are driven one line at a time through {@link #input(String)}, so the same connection can either run on its own thread,
+ * reading from its socket, or be fed by the {@link NioServer} whenever a line arrives.
  */
 public class Connection implements Runnable
 {
-    private final Socket socket; // The socket connecting the client to the server
+    private static final Pattern emailPattern = Pattern.compile("^(.+)@(.+)$"); // The regular expression for email validation
+
+    private final String address; // The address of the connecting client
+    private final Closeable socket; // The socket connecting the client to the server
+    private final OutputStream output; // For sending cached listings to the client
     private final PrintWriter writer; // For sending server responses to the client
-    private final BufferedReader reader; // For receiving client responses
+    private final BufferedReader reader; // For receiving client responses, when the connection runs on its own thread
     private int page = 0; // The current page displayed by the server
-    private int currentHotel; // The hotel that was chosen
+    private int step = 0; // The step reached in the dialogue of the current page; 0 while the client is choosing a page
+    private int currentHotel = -1; // The hotel that was chosen
+    private List<Hotel> listed = Hotel.getHotelsByRating(); // The hotels listed on the landing page, the best rated first
+    private String filter; // The location or name the hotels listed on the landing page are filtered by, or null for every hotel
+    private int listPage = 0; // The page of the hotels listed on the landing page
+    private RoomListing listing; // The listing of rooms on display, which the client can page through, or null if there is none
+    private boolean open = true; // Whether the client is still connected
+
+    // The answers collected so far in the dialogue of the current page
+    private List<Room> choices;
+    private Room room;
+    private int response;
+    private String name;
+    private String email;
+    private String date;
+    private int from; // The first night of the booking
+    private int duration; // The number of nights of the booking
+    private int price;
+    private int beds;
 
     public Connection(Socket socket) throws Exception
     {
+        this(socket.getInetAddress().toString(), socket.getOutputStream(), socket);
+    }
+
+    protected Connection(String address, OutputStream output, Closeable socket) throws Exception
+    {
+        this.address = address;
         this.socket = socket;
-        this.writer = new PrintWriter(socket.getOutputStream());
-        this.reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        this.output = output;
+        this.writer = new PrintWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8)); // Clients, and the router, talk to the server in UTF-8
+        this.reader = socket instanceof Socket ? new BufferedReader(new InputStreamReader(((Socket) socket).getInputStream(), StandardCharsets.UTF_8)) : null;
     }
 
     /**
-     * This method is the landing page of the server. This is displayed when a client connects to the server. It displays a list of available hotels.
+     * This method is the landing page of the server. This is displayed when a client connects to the server.
+     * It displays one page of the available hotels, the best rated first, so that the page does not grow with the number of hotels in the server.
      */
     private void home()
     {
+        int pages = Math.max(1, (this.listed.size() + Config.pageSize - 1) / Config.pageSize);
+        this.listPage = Math.max(0, Math.min(this.listPage, pages - 1));
         this.writer.println("..........*W*E*L*C*O*M*E*.........");
         this.writer.println("Thank you for choosing CEO-Tourism.gr for your stay!");
         this.writer.println("..................................");
         this.writer.println("Please select a hotel.");
         this.writer.println("Note: You can always enter 0 to quit.");
+        this.writer.println("Enter S to search the free rooms of every hotel.");
+        this.writer.println("Enter N or P for the next or previous page, F followed by a location or a name to filter the hotels, or F alone to list every hotel.");
         this.writer.println();
-        // Display all the hotels in the server
-        for(int i = 0; i < Hotel.hotels.size(); ++i)
-            this.writer.println((i + 1) + ": " + Hotel.hotels.get(i) + '\n');
+        // Display the hotels of the current page
+        int first = this.listPage * Config.pageSize;
+        for(Hotel hotel : this.listed.subList(first, Math.min(first + Config.pageSize, this.listed.size())))
+            this.writer.println((hotel.id + 1) + ": " + hotel + '\n');
+        if(this.listed.isEmpty())
+            this.writer.println("Sorry, No Hotel Matches \"" + this.filter + "\".\n");
+        this.writer.println("Page " + (this.listPage + 1) + " Of " + pages + " (" + this.listed.size() + " Hotels" + (this.filter != null ? " Matching \"" + this.filter + "\"" : "") + ")");
         this.writer.print("Select Hotel: ");
         this.writer.flush(); // Send this page to the client
     }
 
+    /**
+     * This method filters the hotels listed on the landing page by location, or by name if no hotel is in that location.
+     * @param filter the location or name, or an empty string to list every hotel.
+     */
+    private void filter(String filter)
+    {
+        if(filter.isEmpty())
+        {
+            this.filter = null;
+            this.listed = Hotel.getHotelsByRating();
+        }
+        else
+        {
+            List<Hotel> found = Hotel.getHotelsIn(filter);
+            this.filter = filter;
+            this.listed = found.isEmpty() ? Hotel.getHotelsNamed(filter) : found;
+        }
+        this.listPage = 0;
+        home();
+    }
+
+    /**
+     * This method is used to search the free rooms of every hotel, from the landing page. It asks the client for the location of the hotels.
+     */
+    private void searchAll()
+    {
+        this.writer.println("Enter Location (* For Any): ");
+        this.writer.flush();
+        this.step = 1;
+    }
+
+    /**
+     * This method continues the search of every hotel with the next answer of the client, and lists the best rooms found once every parameter is known.
+     * @param line the answer of the client.
+     */
+    private void searchAll(String line)
+    {
+        if(this.step < 6) // The client entered one of the parameters, ask for the next one
+        {
+            if(this.step == 1)
+            {
+                this.name = line.trim();
+                this.writer.println("Enter Max Price: ");
+            }
+            else if(this.step == 2)
+            {
+                this.price = number(line);
+                this.writer.println("Enter Number Of Beds: ");
+            }
+            else if(this.step == 3)
+            {
+                this.beds = number(line);
+                this.writer.println("Enter Start Date: ");
+            }
+            else if(this.step == 4)
+            {
+                this.date = line;
+                this.writer.println("Enter Number Of Nights: ");
+            }
+            else
+            {
+                this.response = Math.max(1, number(line));
+                this.writer.println("1: Cheapest Rooms First");
+                this.writer.println("2: Best Rated Hotels First");
+                this.writer.print("Input Command: ");
+            }
+            this.writer.flush();
+            ++this.step;
+            return;
+        }
+
+        this.step = 0;
+        String location = this.name.isEmpty() || this.name.equals("*") ? null : this.name;
+        int from;
+        try
+        {
+            from = BookingDetails.day(this.date);
+            BookingDetails.checkStay(from, this.response);
+        }
+        catch (IllegalArgumentException exception)
+        {
+            this.writer.println("Sorry, " + exception.getMessage() + ".");
+            this.writer.println();
+            home();
+            return;
+        }
+        HotelSearch.Order order = number(line) == 2 ? HotelSearch.Order.RATING : HotelSearch.Order.PRICE;
+        List<Room> found = HotelSearch.search(location, this.price, this.beds, from, from + this.response, order, Config.searchLimit);
+        if(found.isEmpty()) // If there are no rooms
+            this.writer.println("Sorry, There Are No Rooms Available.");
+        else
+        {
+            //Display the rooms, with their hotels
+            for(int x = 0; x < found.size(); ++x)
+            {
+                Room room = found.get(x);
+                this.writer.println((x + 1) + ": " + room.hotel.getName() + ", " + room.hotel.getLocation() + ", " + room.hotel.getRatings() + " Stars"
+                        + " - Room " + (room.number + 1) + ", $" + room.price + ", " + room.numberOfBeds + " Beds, \"" + room.getDescription() + "\"");
+            }
+        }
+        this.writer.println();
+        home(); // Back to the landing page, so that the client can choose a hotel
+    }
+
     /**
      * This method is the welcome page of each individual hotel in the server.
      */
@@ -71,129 +218,179 @@ public class Connection implements Runnable
      */
     private void bookedRooms()
     {
-        List<Room> rooms = Hotel.getHotel(this.currentHotel).getBookedRooms(); // Get the list of rooms which have been booked in this hotel
-        this.writer.println("...Booked Rooms...");
-        if(rooms.isEmpty()) // If there are no booked rooms
-            this.writer.println("There Are No Booked Rooms.");
-        else
-        {
-            // Display the rooms
-            for(int x = 0; x < rooms.size(); ++x)
-                this.writer.println((x + 1) + ": " + rooms.get(x) + '\n');
-        }
-
-        this.writer.print("Enter 0 to go back: ");
-        this.writer.flush();
+        Hotel hotel = Hotel.getHotel(this.currentHotel);
+        // Which rooms are booked changes every night
+        send(new RoomListing("booked " + BookingDetails.today(), "...Booked Rooms...", true, "Enter 0 to go back: ", hotel::scanBookedRooms));
     }
 
     /**
-     * This method is used to book a room in the hotel.
+     * This method is used to book a room in the hotel. It asks the client for the nights of the stay first,
+     * then displays the rooms of the hotel that are free for all of them and asks the client to select one.
      */
-    private void bookRoom() {
-        List<Room> rooms = Hotel.getHotel(this.currentHotel).getEmptyRooms(); // Get the list of rooms in the hotel which have not been booked
-        if(rooms.isEmpty())
+    private void bookRoom()
+    {
+        if(!Replication.isPrimary())
         {
-            this.writer.println("Sorry, There Are No Rooms Available.");
-            this.writer.flush();
+            readOnly();
             return;
         }
-        else
-        {
-            for(int x = 0; x < rooms.size(); ++x)
-                this.writer.println((x + 1) + ": " + rooms.get(x) + '\n');
-        }
-        this.writer.print("Select Room: "); // Prompt the user to select a room
+        this.writer.print("Enter Booking Start Date: ");
         this.writer.flush();
-        int response = Integer.parseInt(read()); // Read the input from the client
+        this.step = 1;
+    }
+
+    /**
+     * This method continues the booking of a room with the next answer of the client.
+     * @param line the answer of the client.
+     */
+    private void bookRoom(String line)
+    {
         try
         {
-            if(response > 0) // If the client's response is valid
+            if(this.step == 1) // The client entered the starting date of the booking
+            {
+                this.from = BookingDetails.day(line); // Only a date that exists, in the format dd/MM/yyyy, is accepted
+                if(this.from < BookingDetails.today())
+                    throw new Exception("The booking cannot start before today");
+                this.writer.print("Enter Duration in Days: ");
+                this.step = 2;
+            }
+            else if(this.step == 2) // The client entered the duration of stay
             {
-                Room room = rooms.get(response - 1); // Get the room about to be booked
+                this.duration = Integer.parseInt(line.trim());
+                Hotel hotel = Hotel.getHotel(this.currentHotel);
+                int from = this.from;
+                BookingDetails.checkStay(from, this.duration);
+                int to = from + this.duration;
+                this.step = 3;
+                // Only the rooms free for every night of the stay are listed, without their bookings, which name other customers
+                send(new RoomListing("book " + from + " " + to, null, true, false, "Select Room: ",
+                        (cursor, limit, action) -> hotel.scanEmptyRooms(from, to, cursor, limit, action)));
+                return;
+            }
+            else if(this.step == 3) // The client selected a room
+            {
+                if(turnPage(line)) // The client asked for another page of rooms instead
+                    return;
+                this.response = number(line);
+                if(this.response <= 0) // If the client does not wish to book a room
+                {
+                    this.step = 0;
+                    this.writer.flush();
+                    return;
+                }
+                List<Room> rooms = Hotel.getHotel(this.currentHotel).getRooms();
+                if(this.response > rooms.size() || !rooms.get(this.response - 1).isFree(this.from, this.from + this.duration)) // Only the rooms listed, which are free for the stay, can be selected
+                {
+                    this.step = 0;
+                    this.writer.println("Sorry, Wrong Room Number.");
+                    this.writer.print("Enter 0 to go back: ");
+                    this.writer.flush();
+                    return;
+                }
+                this.room = rooms.get(this.response - 1); // Get the room about to be booked
                 this.writer.print("Enter Customer Full Name: ");
-                this.writer.flush();
-                String name = read(); // Get the name of the customer
-
+                this.step = 4;
+            }
+            else if(this.step == 4) // The client entered the name of the customer
+            {
+                this.name = line;
                 this.writer.print("Enter Contact Information (Email Address): ");
-                this.writer.flush();
-                String email = read(); // Get the email of the customer
-                String regex = "^(.+)@(.+)$";
-                Pattern pattern = Pattern.compile(regex);
-                Matcher matcher = pattern.matcher(email);
-                while(!matcher.matches()){ // Check if input matches the regular expression for email validation
+                this.step = 5;
+            }
+            else if(this.step == 5) // The client entered the email of the customer
+            {
+                if(!emailPattern.matcher(line).matches()) // Check if input matches the regular expression for email validation
+                {
                     this.writer.println("Please provide a valid email address: ");
                     this.writer.flush();
-                    email = read();
-                    matcher = pattern.matcher(email);
+                    return;
                 }
+                this.email = line;
+                this.step = 0;
 
-                this.writer.print("Enter Booking Start Date: ");
-                this.writer.flush();
-                String date = read(); // Get the starting date of the booking
-                SimpleDateFormat format = new SimpleDateFormat("dd/MM/yyyy");
-                format.setLenient(true);
-                try {
-                   format.parse(date);
-                } catch (ParseException e) {
-                    this.writer.print("Invalid date format. Automatically setting today as the booking start date.\n");
-                    this.writer.flush();
-                } // Ensure that date format is according to the desired pattern
-
-                this.writer.print("Enter Duration in Days: ");
-                this.writer.flush();
-                int duration = Integer.parseInt(read()); // Get the duration of stay
-
-                Hotel.getHotel(this.currentHotel).book(name, email, date, duration, room); // Book the room
-                this.writer.println("Success: Room " + response + " has been booked by " + name + " (" + email + ")");
-                this.writer.println("Booking Receipt: " + room); // Send the booking receipt to the client
-                Hotel.saveRooms(); // Because there has been a change, save the hotels to the data file.
+                Hotel.getHotel(this.currentHotel).book(this.name, this.email, this.from, this.duration, this.room); // Book the room
+                this.writer.println("Success: Room " + this.response + " has been booked by " + this.name + " (" + this.email + ")");
+                this.writer.println("Booking Receipt: " + this.room.summary()); // Send the booking receipt to the client
+                this.writer.println("Start Date (" + LocalDate.ofEpochDay(this.from).format(BookingDetails.dateFormat) + ") Duration In Days (" + this.duration + ")");
             }
         }
         catch (Exception e)
         {
+            this.step = 0;
             this.writer.println("Error: " + e.getMessage());
         }
         this.writer.flush();
     }
 
-
     /**
-     * This method is used to remove the booking of a client.
+     * This method is used to remove the booking of a client. It asks the client for the name of the customer.
      */
     private void removeBooking()
     {
+        if(!Replication.isPrimary())
+        {
+            readOnly();
+            return;
+        }
         this.writer.println("...Remove Customer Booking...");
         this.writer.print("Enter Customer Name: ");
         this.writer.flush();
-        String name = read(); // Get the name of the client
+        this.step = 1;
+    }
+
+    /**
+     * This method tells the client that bookings and cancellations are not taken by this server, since it is a read-only replica, see {@link Replication}.
+     */
+    private void readOnly()
+    {
+        this.step = 0;
+        this.writer.println("Sorry, This Server Only Shows The Rooms. Please Book Or Cancel On The Primary Server.");
+        this.writer.print("Enter 0 to go back: ");
+        this.writer.flush();
+    }
+
+    /**
+     * This method continues the removal of a booking with the next answer of the client.
+     * @param line the answer of the client.
+     */
+    private void removeBooking(String line)
+    {
         try
         {
-            List<Room> rooms = Hotel.getHotel(this.currentHotel).getRoomsBooked(name); // Get the list of rooms that have already been booked by this customer
-            if(rooms.isEmpty()) // If the customer has not booked any rooms
+            if(this.step == 1) // The client entered the name of the customer
             {
-                this.writer.println("Sorry, no rooms have been booked by " + name);
-                this.writer.print("Enter 0 to go back: ");
+                this.name = line;
+                this.choices = Hotel.getHotel(this.currentHotel).getRoomsBooked(this.name); // Get the list of rooms that have already been booked by this customer
+                if(this.choices.isEmpty()) // If the customer has not booked any rooms
+                {
+                    this.step = 0;
+                    this.writer.println("Sorry, no rooms have been booked by " + this.name);
+                    this.writer.print("Enter 0 to go back: ");
+                }
+                else
+                {
+                    // Display all the rooms
+                    for(int x = 0; x < this.choices.size(); ++x)
+                        this.writer.println((x + 1) + ": " + this.choices.get(x) + '\n');
+
+                    this.writer.println("Please indicate the room you wish to clear.");
+                    this.writer.print("Select Room: "); // Prompt the client to select the room
+                    this.step = 2;
+                }
                 this.writer.flush();
             }
-            else
+            else if(this.step == 2) // The client selected the room
             {
-                // Display all the rooms
-                for(int x = 0; x < rooms.size(); ++x)
-                    this.writer.println((x + 1) + ": " + rooms.get(x) + '\n');
-
-                this.writer.println("Please indicate the room you wish to clear.");
-                this.writer.print("Select Room: "); // Prompt the client to select the room
-                this.writer.flush();
-
-                int response = Integer.parseInt(read()); // Get the response of the client
-                if(response > 0 && response <= rooms.size()) // If the response of the client is valid
+                this.step = 0;
+                int response = Integer.parseInt(line); // Get the response of the client
+                if(response > 0 && response <= this.choices.size()) // If the response of the client is valid
                 {
-                    Room room = rooms.get(response - 1); // Get the indicated room
-                    Hotel.getHotel(this.currentHotel).deleteBooking(name, room); // Delete the booking of the room
-                    this.writer.println("Success: The booking of " + name + " for room " + response + " has been removed!");
+                    Room room = this.choices.get(response - 1); // Get the indicated room
+                    Hotel.getHotel(this.currentHotel).deleteBooking(this.name, room); // Delete the booking of the room
+                    this.writer.println("Success: The booking of " + this.name + " for room " + response + " has been removed!");
                     this.writer.print("Enter 0 to go back: ");
                     this.writer.flush();
-                    Hotel.saveRooms(); // Because there has been a change, save the room.
                 }
                 else
                     {
@@ -205,6 +402,7 @@ public class Connection implements Runnable
         }
         catch(Exception e)
         {
+            this.step = 0;
             this.writer.println("Error: " + e.getMessage());
             this.writer.flush();
         }
@@ -215,19 +413,8 @@ public class Connection implements Runnable
      */
     private void rooms()
     {
-        List<Room> rooms = Hotel.getHotel(this.currentHotel).getRooms(); // Get all the rooms in the hotel
-        this.writer.println("...All Rooms...");
-        if(rooms.isEmpty()) // If there are no rooms
-            this.writer.println("Sorry, There Are No Rooms Available.");
-        else
-        {
-            // Display the rooms
-            for(int x = 0; x < rooms.size(); ++x)
-                this.writer.println((x + 1) + ": " + rooms.get(x) + '\n');
-        }
-
-        this.writer.print("Enter 0 to go back: ");
-        this.writer.flush();
+        Hotel hotel = Hotel.getHotel(this.currentHotel);
+        send(new RoomListing("rooms", "...All Rooms...", true, "Enter 0 to go back: ", hotel::scanRooms));
     }
 
     /**
@@ -235,57 +422,199 @@ public class Connection implements Runnable
      */
     private void emptyRooms()
     {
-        List<Room> rooms = Hotel.getHotel(this.currentHotel).getEmptyRooms(); // Get the rooms which have not been booked in the hotel
-        this.writer.println("...Empty Rooms...");
-        if(rooms.isEmpty())
-            this.writer.println("Sorry, There Are No Rooms Available.");
-        else
-        {
-            for(int x = 0; x < rooms.size(); ++x)
-                this.writer.println((x + 1) + ": " + rooms.get(x) + '\n');
-        }
-
-        this.writer.print("Enter 0 to go back: ");
-        this.writer.flush();
+        Hotel hotel = Hotel.getHotel(this.currentHotel);
+        int today = BookingDetails.today(); // Which rooms are empty changes every night
+        send(new RoomListing("empty " + today, "...Empty Rooms...", true, "Enter 0 to go back: ",
+                (cursor, limit, action) -> hotel.scanEmptyRooms(today, today + 1, cursor, limit, action)));
     }
 
     /**
-     * This method is used to search for rooms based on a particular parameter, ether by price or by number of beds.
+     * This method is used to search for rooms based on a particular parameter, ether by price, by number of beds or by amenities, or for free rooms based on price, beds and dates.
+     * It asks the client which parameter to search by.
      */
     private void search()
     {
         this.writer.println("1: Search For Rooms Based On Price");
         this.writer.println("2: Search For Rooms Based On Number Of Beds");
+        this.writer.println("3: Search For Free Rooms Based On Price, Number Of Beds And Dates");
+        this.writer.println("4: Search For Rooms Based On Amenities");
         this.writer.print("Input Command: ");
         this.writer.flush();
-        int response = Integer.parseInt(read()); // Get the response of the client
+        this.step = 1;
+    }
 
-        List<Room> rooms = null;
-        if(response == 1) // If search by price was selected
+    /**
+     * This method continues the search with the next answer of the client.
+     * @param line the answer of the client.
+     */
+    private void search(String line)
+    {
+        Hotel hotel = Hotel.getHotel(this.currentHotel);
+        String key = null; // What is being searched for, or null if a wrong response was received from the client
+        RoomListing.Scan rooms = null;
+        if(this.step == 1) // The client selected the parameter
         {
-            this.writer.println("Enter Max Price: ");
-            this.writer.flush();
-            int price = Integer.parseInt(read()); // Get the price from the client
-            rooms = Hotel.getHotel(this.currentHotel).searchByPrice(price); // Get the rooms in the hotel that have that price or lower
+            this.response = number(line); // Get the response of the client
+            if(this.response == 1) // If search by price was selected
+            {
+                this.writer.println("Enter Max Price: ");
+                this.writer.flush();
+                this.step = 2;
+                return;
+            }
+            else if(this.response == 2) // If search by beds was selected
+            {
+                this.writer.println("Enter Number Of Beds: ");
+                this.writer.flush();
+                this.step = 2;
+                return;
+            }
+            else if(this.response == 3) // If search by all the parameters was selected
+            {
+                this.writer.println("Enter Max Price: ");
+                this.writer.flush();
+                this.step = 2;
+                return;
+            }
+            else if(this.response == 4) // If search by amenities was selected
+            {
+                for(Amenity amenity : Amenity.values())
+                    this.writer.println((amenity.ordinal() + 1) + ": " + amenity.getLabel());
+                this.writer.println("Enter The Amenities The Room Must Have (e.g. 1 5): ");
+                this.writer.flush();
+                this.step = 2;
+                return;
+            }
         }
-        else if(response == 2) // If search by beds was selected
+        else if(this.response == 3 && this.step < 5) // The client entered one of the parameters, ask for the next one
         {
-            this.writer.println("Enter Number Of Beds: ");
+            if(this.step == 2)
+            {
+                this.price = number(line);
+                this.writer.println("Enter Number Of Beds: ");
+            }
+            else if(this.step == 3)
+            {
+                this.beds = number(line);
+                this.writer.println("Enter Start Date: ");
+            }
+            else
+            {
+                this.date = line;
+                this.writer.println("Enter Number Of Nights: ");
+            }
             this.writer.flush();
-            int beds = Integer.parseInt(read()); // Get the number of beds from the client
-            rooms = Hotel.getHotel(this.currentHotel).searchByBeds(beds); // Get the rooms in the hotel that have that number of beds
+            ++this.step;
+            return;
+        }
+        else if(this.response == 3) // The client entered the number of nights
+        {
+            int price = this.price, beds = this.beds, from, nights = Math.max(1, number(line));
+            try
+            {
+                from = BookingDetails.day(this.date);
+                BookingDetails.checkStay(from, nights);
+            }
+            catch (IllegalArgumentException exception)
+            {
+                this.step = 0;
+                this.writer.println("Sorry, " + exception.getMessage() + ".");
+                this.writer.print("Enter 0 to go back: ");
+                this.writer.flush();
+                return;
+            }
+            int to = from + nights;
+            key = "search " + price + " " + beds + " " + from + " " + to;
+            rooms = (cursor, limit, action) -> hotel.scanSearch(price, beds, from, to, cursor, limit, action); // Get the free rooms matching all the parameters
+        }
+        else if(this.response == 1) // The client entered the price
+        {
+            int price = number(line); // Get the price from the client
+            key = "price " + price;
+            rooms = (cursor, limit, action) -> hotel.scanByPrice(price, cursor, limit, action); // Get the rooms in the hotel that have that price or lower
+        }
+        else if(this.response == 2) // The client entered the number of beds
+        {
+            int beds = number(line); // Get the number of beds from the client
+            key = "beds " + beds;
+            rooms = (cursor, limit, action) -> hotel.scanByBeds(beds, cursor, limit, action); // Get the rooms in the hotel that have that number of beds
+        }
+        else if(this.response == 4) // The client entered the amenities
+        {
+            int amenities = 0;
+            for(String choice : line.trim().split("[\\s,]+")) // Add each amenity the client chose
+            {
+                int amenity = number(choice);
+                if(amenity < 1 || amenity > Amenity.values().length) // If the client chose something that is not an amenity
+                {
+                    amenities = 0;
+                    break;
+                }
+                amenities |= Amenity.values()[amenity - 1].bit();
+            }
+            if(amenities != 0)
+            {
+                int required = amenities;
+                key = "amenities " + required;
+                rooms = (cursor, limit, action) -> hotel.scanByAmenities(required, cursor, limit, action); // Get the rooms in the hotel that have all these amenities
+            }
         }
 
-        if(rooms == null || rooms.isEmpty()) // If there are no rooms or a wrong response was received from the client
+        this.step = 0;
+        if(key == null) // If a wrong response was received from the client
+        {
             this.writer.println("Sorry, There Are No Rooms Available.");
+            this.writer.print("Enter 0 to go back: ");
+            this.writer.flush();
+            return;
+        }
+        send(new RoomListing(key, null, false, "Enter 0 to go back: ", rooms)); // Display the rooms
+    }
+
+    /**
+     * This method shows the current page of a listing of rooms of the current hotel, which then becomes the listing on display.
+     * The page is only rendered if the hotel has changed since it was last rendered.
+     * @param listing the listing.
+     */
+    private void send(RoomListing listing)
+    {
+        this.listing = listing;
+        send(listing.render(Hotel.getHotel(this.currentHotel).responses));
+    }
+
+    /**
+     * This method moves the listing on display to the next or the previous page and shows that page.
+     * @param line the input of the client.
+     * @return false if the input is neither N nor P, or if there is no listing on display.
+     */
+    private boolean turnPage(String line)
+    {
+        String command = line.trim();
+        if(this.listing == null || !(command.equalsIgnoreCase("N") || command.equalsIgnoreCase("P")))
+            return false;
+        if(command.equalsIgnoreCase("N"))
+            this.listing.next();
         else
+            this.listing.previous();
+        send(this.listing); // The same page is shown again if there is no such page
+        return true;
+    }
+
+    /**
+     * This method sends a rendered listing to the client.
+     * @param listing the bytes of the listing.
+     */
+    private void send(byte[] listing)
+    {
+        this.writer.flush(); // Send anything written before the listing first
+        try
+        {
+            this.output.write(listing);
+            this.output.flush();
+        }
+        catch (IOException ignored) // If the client has gone, this is noticed when its next line is read
         {
-            //Display the rooms
-            for(Room room : rooms)
-                this.writer.println(room);
         }
-        this.writer.print("Enter 0 to go back: ");
-        this.writer.flush();
     }
 
     /**
@@ -293,6 +622,7 @@ public class Connection implements Runnable
      */
     private void show()
     {
+        this.listing = null; // A new page has no listing until it shows one
         if(this.page == 0)
             welcome();
         if(this.page == 1)
@@ -309,64 +639,176 @@ public class Connection implements Runnable
             search();
     }
 
+    /**
+     * This method converts the input of the client to a number.
+     * @param line the input of the client.
+     * @return the number entered, or -1 if the input was not a number.
+     */
+    private static int number(String line)
+    {
+        try
+        {
+            return Integer.parseInt(line.trim());
+        }
+        catch (NumberFormatException ignored)
+        {
+            return -1;
+        }
+    }
+
     /**
      * This method is used to read the input from the client.
-     * @return the input of the client.
+     * @return the input of the client, or null if the client has disconnected.
      */
     private String read()
     {
         try
         {
-            String line = this.reader.readLine(); // Read a line from the client
-            if(line != null) // As long as the line is valid
-                return line;
+            return this.reader.readLine(); // Read a line from the client
         }
         catch (IOException ignored)
         {
-
+            return null;
         }
-        return "-1"; // If anything else happens, always return "-1".
     }
 
     /**
-     * This method is the main heart of the server-client connection. The lifetime of this method is the same as the connection between the server and client.
-     * This method will only return once the client disconnects or if the server is shutdown.
+     * This method displays the landing page to a client that has just connected.
      */
-    @Override
-    public void run()
+    protected void start()
     {
-        String address = socket.getInetAddress().toString(); // Get the address of the connecting client
-        System.out.println("Connected to Client " + address);
-
+        Metrics.sessionsOpened.increment();
+        Metrics.activeSessions.incrementAndGet();
+        System.out.println("Connected to Client " + this.address);
         home(); // Display the landing page
-        int response = Integer.parseInt(read()); // Get the response from the client
+    }
 
-        if(response > 0 && response <= Hotel.hotels.size()) // If the response is valid
+    /**
+     * This method handles a single line of input from the client, and records how long that took under the page the client ends up on.
+     * @param line the input of the client, or null if the client has disconnected.
+     */
+    protected void input(String line)
+    {
+        long start = Metrics.start();
+        handle(line);
+        (this.page >= 0 && this.page < Metrics.pages.length ? Metrics.pages[this.page] : Metrics.otherPage).record(start);
+    }
+
+    /**
+     * This method handles a single line of input from the client. The line either selects the next page or answers the current page.
+     * @param line the input of the client, or null if the client has disconnected.
+     */
+    private void handle(String line)
+    {
+        if(line == null) // If the client has disconnected
         {
-            this.currentHotel = response - 1; // Determine the hotel selected
-            while(true)
+            disconnect();
+            return;
+        }
+
+        if(this.currentHotel < 0) // The client is still on the landing page
+        {
+            if(this.step > 0) // If the client is answering the search of every hotel
             {
-                show(); // Show the route
-                int input = Integer.parseInt(read()); // Read input from the client
-                if(input != -1)
-                {
-                    if(this.page == 0 && input == 0) // If this is the welcome page of a hotel and a client wishes to leave, disconnect.
-                        break;
-                    this.page = input;
-                }
+                searchAll(line);
+                return;
+            }
+            String command = line.trim();
+            if(command.equalsIgnoreCase("S")) // If the client wishes to search every hotel
+            {
+                searchAll();
+                return;
+            }
+            if(command.equalsIgnoreCase("N") || command.equalsIgnoreCase("P")) // If the client wishes to see another page of hotels
+            {
+                this.listPage += command.equalsIgnoreCase("N") ? 1 : -1;
+                home();
+                return;
             }
+            if(command.equalsIgnoreCase("F") || command.regionMatches(true, 0, "F ", 0, 2)) // If the client wishes to filter the hotels
+            {
+                filter(command.substring(1).trim());
+                return;
+            }
+            int response = number(line); // Get the response from the client
+            if(Hotel.getHotel(response - 1) != null) // If the response is valid
+            {
+                this.currentHotel = response - 1; // Determine the hotel selected
+                show();
+            }
+            else
+                disconnect();
+            return;
+        }
+
+        if(this.step > 0) // If the client is answering the current page
+        {
+            if(this.page == 1)
+                bookRoom(line);
+            else if(this.page == 5)
+                removeBooking(line);
+            else if(this.page == 6)
+                search(line);
+            return;
         }
 
+        if(turnPage(line)) // If the client is paging through the listing on display
+            return;
+
+        int input = number(line);
+        if(input != -1)
+        {
+            if(this.page == 0 && input == 0) // If this is the welcome page of a hotel and a client wishes to leave, disconnect.
+            {
+                disconnect();
+                return;
+            }
+            this.page = input;
+        }
+        show(); // Show the route
+    }
+
+    /**
+     * This method checks whether the client is still connected.
+     * @return true if the client is still connected.
+     */
+    protected boolean isOpen()
+    {
+        return this.open;
+    }
+
+    /**
+     * This method disconnects the client from the server.
+     */
+    private void disconnect()
+    {
+        if(!this.open)
+            return;
+        this.open = false;
+        Metrics.activeSessions.decrementAndGet();
         try
         {
             this.writer.print("Disconnected");
             this.writer.flush();
             this.socket.close(); // Close the socket between the client and the server
-            System.out.println("Client " + address + " has been disconnected!");
+            System.out.println("Client " + this.address + " has been disconnected!");
         }
         catch(Exception ignored)
         {
 
         }
     }
+
+    /**
+     * This method is the main heart of the server-client connection when the connection runs on its own thread.
+     * The lifetime of this method is the same as the connection between the server and client.
+     * This method will only return once the client disconnects or if the server is shutdown.
+     */
+    @Override
+    public void run()
+    {
+        start();
+        while(this.open)
+            input(read());
+    }
 }
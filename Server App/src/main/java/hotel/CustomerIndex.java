@@ -0,0 +1,108 @@
+package hotel;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class is used to index the bookings of a hotel by the name of the customer who made them.
+ * Names are compared without regard to case, so each name is stored in lower case.
+ * Looking up the bookings of a customer therefore only depends on how many bookings the customer has, not on how many rooms the hotel has.
+ * Bookings loaded from older data files, which did not save customer names, belong to {@link BookingDetails#anonymous}; they are never found by name,
+ * so a client cannot list or cancel them by typing that name.
+ */
+public class CustomerIndex
+{
+    private final Map<String, Map<BookingDetails, Room>> customers = new ConcurrentHashMap<>(); // The bookings of each customer and the room of each booking
+
+    /**
+     * This method converts the name of a customer into the key under which the bookings of the customer are stored.
+     * @param customerName the name of the customer.
+     * @return the name in lower case.
+     */
+    private static String key(String customerName)
+    {
+        return customerName.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * This method checks whether a name may be used to find bookings.
+     * @param customerName the name of the customer.
+     * @return false if the name is the one given to bookings whose customer is not known.
+     */
+    protected static boolean isOwner(String customerName)
+    {
+        return !key(customerName.trim()).equals(key(BookingDetails.anonymous));
+    }
+
+    /**
+     * This method adds a booking to the index. It must be called while the room is locked.
+     * @param room the room that was booked.
+     * @param details the details of the booking.
+     */
+    protected void add(Room room, BookingDetails details)
+    {
+        this.customers.computeIfAbsent(key(details.customerName), name -> new ConcurrentHashMap<>()).put(details, room);
+    }
+
+    /**
+     * This method removes a booking from the index. It must be called while the room is locked.
+     * @param details the details of the booking.
+     */
+    protected void remove(BookingDetails details)
+    {
+        this.customers.computeIfPresent(key(details.customerName), (name, bookings) -> {
+            bookings.remove(details);
+            return bookings.isEmpty() ? null : bookings; // Forget customers who have no bookings left
+        });
+    }
+
+    /**
+     * This method returns the rooms a customer has booked, in the order of the rooms in the hotel.
+     * @param customerName the name of the customer.
+     * @return the list of rooms.
+     */
+    protected List<Room> rooms(String customerName)
+    {
+        Map<BookingDetails, Room> bookings = isOwner(customerName) ? this.customers.get(key(customerName)) : null;
+        if(bookings == null)
+            return new ArrayList<>();
+        List<Room> rooms = new ArrayList<>(new HashSet<>(bookings.values())); // A customer may have booked the same room more than once
+        rooms.sort(Comparator.comparingInt(room -> room.number));
+        return rooms;
+    }
+
+    /**
+     * This method returns every room that holds at least one booking, past or future.
+     * @return the set of rooms, in no particular order.
+     */
+    protected Set<Room> rooms()
+    {
+        Set<Room> rooms = new HashSet<>();
+        for(Map<BookingDetails, Room> bookings : this.customers.values())
+            rooms.addAll(bookings.values());
+        return rooms;
+    }
+
+    /**
+     * This method returns the bookings a customer has made for a room.
+     * @param customerName the name of the customer.
+     * @param room the room that was booked.
+     * @return the list of bookings.
+     */
+    protected List<BookingDetails> bookings(String customerName, Room room)
+    {
+        Map<BookingDetails, Room> bookings = isOwner(customerName) ? this.customers.get(key(customerName)) : null;
+        List<BookingDetails> found = new ArrayList<>();
+        if(bookings != null)
+            for(Map.Entry<BookingDetails, Room> booking : bookings.entrySet())
+                if(booking.getValue() == room)
+                    found.add(booking.getKey());
+        return found;
+    }
+}
@@ -0,0 +1,84 @@
+package hotel;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class is used to hold every distinct room description in the server exactly once, together with the amenities it mentions.
+ * Rooms refer to their description by its id, its position in the dictionary, so a catalogue in which thousands of rooms share
+ * a handful of descriptions only keeps a handful of strings, however the rooms were loaded.
+ * Ids are only meaningful while the server runs; the binary data file saves the dictionary together with the ids of its rooms.
+ */
+public class Descriptions
+{
+    private static final Map<String, Integer> ids = new ConcurrentHashMap<>(); // The id of each description
+    private static volatile String[] descriptions = new String[16]; // The description of each id
+    private static volatile int[] amenities = new int[16]; // The bitmask of the amenities of each id, see Amenity
+    private static int size = 0; // The number of descriptions in the dictionary
+
+    /**
+     * This method returns the id of a description, adding the description to the dictionary if it is not there yet.
+     * @param description the description of a room.
+     * @return the id of the description.
+     */
+    protected static int id(String description)
+    {
+        Integer id = Descriptions.ids.get(description);
+        return id != null ? id : add(description);
+    }
+
+    /**
+     * This method adds a description to the dictionary, unless another thread added it first.
+     * @param description the description being added.
+     * @return the id of the description.
+     */
+    private static synchronized int add(String description)
+    {
+        Integer id = Descriptions.ids.get(description);
+        if(id != null)
+            return id;
+        String[] descriptions = Descriptions.descriptions;
+        int[] amenities = Descriptions.amenities;
+        if(Descriptions.size == descriptions.length)
+        {
+            descriptions = Arrays.copyOf(descriptions, descriptions.length * 2);
+            amenities = Arrays.copyOf(amenities, amenities.length * 2);
+        }
+        descriptions[Descriptions.size] = description;
+        amenities[Descriptions.size] = Amenity.parse(description);
+        Descriptions.amenities = amenities;
+        Descriptions.descriptions = descriptions; // Publish the description before its id
+        Descriptions.ids.put(description, Descriptions.size);
+        return Descriptions.size++;
+    }
+
+    /**
+     * This method returns the description with an id.
+     * @param id the id of the description.
+     * @return the description.
+     */
+    protected static String get(int id)
+    {
+        return Descriptions.descriptions[id];
+    }
+
+    /**
+     * This method returns the amenities mentioned by the description with an id.
+     * @param id the id of the description.
+     * @return the bitmask of the amenities.
+     */
+    protected static int amenities(int id)
+    {
+        return Descriptions.amenities[id];
+    }
+
+    /**
+     * This method returns the number of descriptions in the dictionary. The ids of the descriptions range from 0 to this number, excluded.
+     * @return the number of descriptions.
+     */
+    protected static synchronized int size()
+    {
+        return Descriptions.size;
+    }
+}
@@ -3,58 +3,146 @@ package hotel;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
  * This class is used to represent a hotel. It contains the name of the hotel, the location of the hotel,
  * the rating of the hotel, as well as a list of rooms. It also contains functions to operate on hotels.
+ * Listing and searching never lock: the list of rooms is copied whenever a room is added, so readers always see a complete snapshot.
+ * Booking and cancelling only lock the room being changed.
  */
 public class Hotel
 {
-	protected static final List<Hotel> hotels = new ArrayList<>(); // List of all the hotels in the server
-	protected static final String savePath = System.getProperty("user.home") + "\\Server App"; // The directory in which the data file will be saved
-
+	protected static final HotelRegistry hotels = new HotelRegistry(); // All the hotels in the server, by id, location, name and rating
+	protected static final String savePath = System.getProperty("user.home") + "\\Server App" + (Config.shards > 1 ? " Shard " + Config.shard : "")
+			+ (Config.role.equals("replica") ? " Replica " + Config.port : ""); // The directory in which the data file will be saved, one for each shard and each replica
+	protected static final String textPath = Hotel.savePath + "\\hotels.txt"; // The data file in text format
+	protected static final String snapshotPath = Hotel.savePath + "\\hotels.bin"; // The data file in binary format
+	protected static final String storePath = Hotel.savePath + "\\hotels.map"; // The memory-mapped rooms, when hotel.storage is mapped
+	protected static final String bookingsPath = Hotel.savePath + "\\bookings.bin"; // The bookings of the memory-mapped rooms
+
+	protected int id; // The position of the hotel in the registry
 	private final String name;
 	private final String location;
 	private final int ratings;
 	private final List<Room> rooms;
+	protected final Occupancy occupancy = new Occupancy(); // The rooms booked on each night
+	protected final CustomerIndex customers = new CustomerIndex(); // The bookings of each customer
+	protected final ResponseCache responses = new ResponseCache(); // The rendered listings of the hotel
+	private volatile RoomIndex index = new RoomIndex(new ArrayList<>()); // The rooms by price and by number of beds
 
 	/**
 	 * This method initializes, creates and assigns the list of hotels in the server.
 	 */
 	protected static void init()
 	{
-		boolean newHotels = false;
+		File directory = new File(Hotel.savePath); // The data directory
+		if (!directory.exists() || !directory.isDirectory()) // If the data directory doesn't exist or it is not a directory
+		{
+			directory.mkdir(); // Create the data directory
+			System.out.println("Created The Home Directory At: " + directory.getAbsolutePath());
+		}
+
 		try
 		{
-			File directory = new File(Hotel.savePath); // The data directory
-			File hotelsFile = new File(Hotel.savePath + "\\hotels.txt"); // The data file
-			if (!directory.exists() || !directory.isDirectory()) // If the data directory doesn't exist or it is not a directory
+			boolean mapped = Config.storage.equals("mapped");
+			Path store = Paths.get(Hotel.storePath), bookings = Paths.get(Hotel.bookingsPath);
+			Path moved = Paths.get(Hotel.storePath + ".moved"); // Marks a store whose rooms have already been moved back into the data file
+			if(Files.exists(moved)) // If the store could not be removed once its rooms were moved back, remove it before it is mapped again
+			{
+				Files.deleteIfExists(store);
+				Files.deleteIfExists(bookings);
+				Files.delete(moved);
+			}
+			if(!mapped && Files.exists(store)) // If the server used to keep its rooms in a store, move them back into the data file
 			{
-				directory.mkdir(); // Create the data directory
-				System.out.println("Created The Home Directory At: " + directory.getAbsolutePath());
+				MappedStore.open(store, bookings);
+				Hotel.saveRooms();
+				Hotel.hotels.clear(); // Let go of the mapped rooms, so that the store can be unmapped
+				Files.write(moved, new byte[0]);
+				if(MappedStore.delete(store))
+				{
+					Files.deleteIfExists(bookings);
+					Files.delete(moved);
+					System.out.println("Moved The Rooms Of " + store.getFileName() + " Back Into The Data File");
+				}
+				else
+					System.out.println("Moved The Rooms Of " + store.getFileName() + " Back Into The Data File, It Will Be Removed On The Next Start");
+			}
+			if(mapped && !Files.exists(store)) // If the server is to keep its rooms in a store for the first time, create it from the data file
+			{
+				Hotel.loadData();
+				Path temporary = Paths.get(Hotel.storePath + ".tmp");
+				MappedStore.create(temporary, bookings);
+				Files.move(temporary, store, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				Hotel.hotels.clear();
+				System.out.println("Created The Room Store At: " + store.toAbsolutePath());
 			}
 
-			if(!(hotelsFile.exists() && hotelsFile.isFile())) // If the data file doesn't exist or it is not a file
+			if(mapped)
 			{
-				hotelsFile.createNewFile(); // Create the data file
-				System.out.println("Created The Data File At: " + hotelsFile.getAbsolutePath());
-				newHotels = true;
+				long start = System.nanoTime();
+				MappedStore.open(store, bookings);
+				Metrics.loadRooms.record(start);
+				System.out.println("Mapped " + Hotel.hotels.size() + " Hotels From " + store.getFileName() + " In " + (System.nanoTime() - start) / 1000000 + " ms");
 			}
+			else
+				Hotel.loadData();
 		}
-		catch(Exception e)
+		catch(IOException exception)
 		{
-			e.printStackTrace();
+			exception.printStackTrace();
+			System.exit(-1); // Shutdown the server because the rooms cannot be loaded
 		}
+		Journal.open(); // Apply the changes made since the data file was last saved
+	}
 
-		if(newHotels)
+	/**
+	 * This method loads the hotels from the data file, or creates the default hotels if there is no data file yet.
+	 * @throws IOException if the data file could not be read.
+	 */
+	private static void loadData() throws IOException
+	{
+		boolean binary = Config.format.equals("binary");
+		File snapshotFile = new File(Hotel.snapshotPath); // The binary data file
+		File hotelsFile = new File(Hotel.textPath); // The text data file
+		File dataFile = binary ? snapshotFile : hotelsFile; // Prefer the data file of the configured format, but load the other one if it is the only one
+		if(!dataFile.isFile())
+			dataFile = binary ? hotelsFile : snapshotFile;
+
+		long start = System.nanoTime();
+		if(!dataFile.isFile()) // If there is no data file yet
+		{
 			Setup.createDefaultHotels(); // Create the default hotels
+			System.out.println("Created The Data File At: " + new File(binary ? Hotel.snapshotPath : Hotel.textPath).getAbsolutePath());
+		}
 		else
-			Hotel.loadRooms(); // Load the hotels from the data file
+		{
+			if(dataFile == snapshotFile)
+				Snapshot.load(snapshotFile.toPath()); // Load the hotels from the binary data file
+			else
+				Hotel.loadRooms(hotelsFile.toPath()); // Load the hotels from the text data file
+			Metrics.loadRooms.record(start);
+			System.out.println("Loaded " + Hotel.hotels.size() + " Hotels From " + dataFile.getName() + " In " + (System.nanoTime() - start) / 1000000 + " ms");
+			if(dataFile != (binary ? snapshotFile : hotelsFile)) // The journal compacts into the configured format, which converts the data file and removes the old one
+				System.out.println("Converting " + dataFile.getName() + " To " + (binary ? snapshotFile : hotelsFile).getName() + ", " + dataFile.getName() + " Will Be Removed Once It Is Written");
+		}
 	}
 
 
@@ -63,7 +151,26 @@ public class Hotel
 		this.name = name;
 		this.ratings = ratings;
 		this.location = location;
-		this.rooms = new ArrayList<>();			
+		this.rooms = new CopyOnWriteArrayList<>();
+	}
+
+	/**
+	 * This constructor creates a hotel whose rooms are kept somewhere else, such as in a {@link MappedStore}.
+	 * Rooms cannot be added to such a hotel.
+	 * @param name the name of the hotel.
+	 * @param location the location of the hotel.
+	 * @param ratings the ratings of the hotel.
+	 * @param rooms the rooms of the hotel, by number.
+	 * @param index the index of the rooms.
+	 */
+	protected Hotel(String name, String location, int ratings, List<Room> rooms, RoomIndex index)
+	{
+		this.name = name;
+		this.ratings = ratings;
+		this.location = location;
+		this.rooms = rooms;
+		this.index = index;
+		this.occupancy.ensureCapacity(rooms.size());
 	}
 
 	/**
@@ -89,60 +196,188 @@ public class Hotel
 		return this.name;
 	}
 
+	/**
+	 * This method returns the location of the hotel.
+	 * @return the location of the hotel.
+	 */
+	public String getLocation()
+	{
+		return this.location;
+	}
+
+	/**
+	 * This method returns the ratings of the hotel.
+	 * @return the ratings of the hotel.
+	 */
+	public int getRatings()
+	{
+		return this.ratings;
+	}
+
 	/**
 	 * This method returns the list of all the hotels in the server.
 	 * @return the list of all the hotels.
 	 */
 	public static List<Hotel> getHotels()
 	{
-		return Hotel.hotels;
+		return Hotel.hotels.getHotels();
+	}
+
+	/**
+	 * This method returns the hotels in a location.
+	 * @param location the location, whatever its case.
+	 * @return the list of hotels in that location.
+	 */
+	public static List<Hotel> getHotelsIn(String location)
+	{
+		return Hotel.hotels.getHotelsIn(location);
+	}
+
+	/**
+	 * This method returns the hotels with a name.
+	 * @param name the name, whatever its case.
+	 * @return the list of hotels with that name.
+	 */
+	public static List<Hotel> getHotelsNamed(String name)
+	{
+		return Hotel.hotels.getHotelsNamed(name);
+	}
+
+	/**
+	 * This method returns all the hotels in the server, the best rated first.
+	 * @return the list of hotels sorted by rating.
+	 */
+	public static List<Hotel> getHotelsByRating()
+	{
+		return Hotel.hotels.getHotelsByRating();
+	}
+
+	/**
+	 * This method adds a hotel to the list of hotels in the server.
+	 * @param hotel the hotel to be added.
+	 */
+	protected static void addHotel(Hotel hotel)
+	{
+		Hotel.hotels.add(hotel);
 	}
 
 	/**
 	 * This method returns the hotel at the provided index.
 	 * @param index the index of the hotel being requested.
-	 * @return the hotel requested.
+	 * @return the hotel requested, or null if there is no hotel at that index.
 	 */
 	public static Hotel getHotel(int index)
 	{
-		return Hotel.hotels.get(index);
+		return Hotel.hotels.getHotel(index);
 	}
 
 	/**
 	 * This method returns the list of all the rooms in this hotel.
 	 * @return the list of rooms.
 	 */
-	public synchronized List<Room> getRooms()
+	public List<Room> getRooms()
 	{
 		return this.rooms;
 	}
 
+	/**
+	 * This method adds a room to this hotel.
+	 * @param room the room to be added.
+	 */
+	protected void addRoom(Room room)
+	{
+		addRooms(Collections.singletonList(room));
+	}
+
+	/**
+	 * This method adds many rooms to this hotel at once, so that the list of rooms is copied and the indexes are rebuilt only once.
+	 * @param added the rooms to be added.
+	 */
+	protected synchronized void addRooms(List<Room> added)
+	{
+		this.occupancy.ensureCapacity(this.rooms.size() + added.size());
+		int number = this.rooms.size();
+		for(Room room : added)
+		{
+			synchronized(room)
+			{
+				room.number = number++;
+				room.hotel = this;
+				for(BookingDetails details : room.getBookings()) // Mark the bookings the room already has
+				{
+					this.occupancy.book(room.number, details.startDate, details.endDate());
+					this.customers.add(room, details);
+				}
+			}
+		}
+		this.rooms.addAll(added);
+		this.index = new RoomIndex(this.rooms);
+		this.responses.invalidate();
+	}
+
     /**
      * This method is used to get the rooms booked by a particular customer.
      * @param customerName the name of the customer who made the booking.
      * @return the list of rooms the customer has booked.
      */
-	public synchronized List<Room> getRoomsBooked(String customerName)
+	public List<Room> getRoomsBooked(String customerName)
     {
-        return this.rooms.stream().filter(room -> room.details.customerName.equalsIgnoreCase(customerName)).collect(Collectors.toList());
+        long start = Metrics.start();
+        List<Room> rooms = this.customers.rooms(customerName);
+        Metrics.roomsBooked.record(start);
+        return rooms;
     }
 
 	/**
 	 * This method returns the list of empty rooms in this hotel.
-	 * @return the list of rooms that have not been booked.
+	 * @return the list of rooms that have not been booked for tonight.
 	 */
-	public synchronized List<Room> getEmptyRooms()
+	public List<Room> getEmptyRooms()
 	{
-		return this.rooms.stream().filter(room -> !room.isBooked()).collect(Collectors.toList());
+		int today = BookingDetails.today();
+		return getEmptyRooms(today, today + 1);
+	}
+
+	/**
+	 * This method returns the list of rooms in this hotel that are free for all the nights between two dates.
+	 * It combines the occupancy bitmaps of the nights, so only the rooms that turn out to be free are visited.
+	 * @param from the first night.
+	 * @param to the day after the last night.
+	 * @return the list of rooms that have not been booked for any of these nights.
+	 */
+	public List<Room> getEmptyRooms(int from, int to)
+	{
+		long start = Metrics.start();
+		List<Room> rooms = this.rooms; // The rooms are read once, so that the bitmap and the list belong together
+		long[] occupied = this.occupancy.occupied(from, to);
+		List<Room> empty = new ArrayList<>();
+		for(int word = 0; word < occupied.length; ++word)
+		{
+			long free = ~occupied[word];
+			while(free != 0) // Visit each free room of this word
+			{
+				int number = word * 64 + Long.numberOfTrailingZeros(free);
+				if(number >= rooms.size())
+					break;
+				empty.add(rooms.get(number));
+				free &= free - 1;
+			}
+		}
+		Metrics.emptyRooms.record(start);
+		return empty;
 	}
 
 	/**
 	 * This method returns the list of booked rooms in this hotel.
-	 * @return the list of rooms that have been booked.
+	 * @return the list of rooms that have been booked for tonight or a later night.
 	 */
-	public synchronized List<Room> getBookedRooms()
+	public List<Room> getBookedRooms()
 	{
-		return this.rooms.stream().filter(Room::isBooked).collect(Collectors.toList());
+		long start = Metrics.start();
+		List<Room> booked = this.customers.rooms().stream().filter(Room::hasBookings).collect(Collectors.toList()); // Only the rooms that hold bookings are visited
+		booked.sort(Comparator.comparingInt(room -> room.number));
+		Metrics.bookedRooms.record(start);
+		return booked;
 	}
 
 	/**
@@ -153,10 +388,10 @@ public class Hotel
 	 * @return the room requested.
 	 * @throws Exception if the index is out of range or if the name provided was not the same as the customer who booked it.
 	 */
-	public synchronized Room get(String name, int index) throws Exception
+	public Room get(String name, int index) throws Exception
 	{
 		Room room = room(index);
-		if(room.details.customerName.equalsIgnoreCase(name))
+		if(!this.customers.bookings(name, room).isEmpty())
 			return room;
 		throw new Exception("No booking was made by " + name + " for room " + (index + 1));
 	}
@@ -168,7 +403,7 @@ public class Hotel
 	 * @return the room requested.
 	 * @throws Exception if the index provided is out of range.
 	 */
-	public synchronized Room room(int roomIndex) throws Exception
+	public Room room(int roomIndex) throws Exception
 	{
 		if(roomIndex < 0)
 			throw new Exception("Invalid Room Number");
@@ -178,40 +413,93 @@ public class Hotel
 	/**
 	 * This method is used to book a room.
 	 * It accepts the name and email of the customer, the duration of stay and the room being booked.
+	 * The method returns once the booking has been saved, but the room is only locked while it is being changed.
 	 * @param customerName the name of the customer booking the room.
 	 * @param customerEmail the email of the customer booking the room.
-	 * @param date the starting date of the booking.
+	 * @param date the starting date of the booking in the format dd/MM/yyyy.
 	 * @param duration the duration of the booking in days.
 	 * @param room the room being booked.
-	 * @throws Exception if the room has already been booked by another customer.
+	 * @throws Exception if the room has already been booked by another customer for any of these nights, or if the date is not valid.
 	 */
-	public synchronized void book(String customerName, String customerEmail, String date, int duration, Room room) throws Exception
+	public void book(String customerName, String customerEmail, String date, int duration, Room room) throws Exception
 	{
-		room.book(customerName, duration);
+		book(customerName, customerEmail, BookingDetails.day(date), duration, room);
 	}
 
 	/**
-	 * This method is used to delete the booking of a room.
-	 * It accepts the name of the customer and the room under consideration.
+	 * This method is used to book a room from a given day.
+	 * @param customerName the name of the customer booking the room.
+	 * @param customerEmail the email of the customer booking the room.
+	 * @param startDate the first night of the booking, in days since 1970-01-01.
+	 * @param duration the duration of the booking in days.
+	 * @param room the room being booked.
+	 * @throws Exception if the room has already been booked by another customer for any of these nights, if the name cannot be used
+	 * or if this server is a replica.
+	 */
+	public void book(String customerName, String customerEmail, int startDate, int duration, Room room) throws Exception
+	{
+		Replication.checkWritable();
+		if(!CustomerIndex.isOwner(customerName)) // The name of the bookings whose customer is not known
+			throw new Exception("The name " + BookingDetails.anonymous + " cannot be used, please enter your own name");
+		if(customerName.length() > BookingDetails.maxNameLength) // The data files save a name with its length
+			throw new Exception("The name of the customer may be at most " + BookingDetails.maxNameLength + " characters long");
+		BookingDetails.checkStay(startDate, duration); // Before the room is locked
+		long start = Metrics.start();
+		CompletableFuture<Void> saved;
+		try
+		{
+			synchronized(room) // Lock the room, so that its journal records are queued in the same order as its changes
+			{
+				Metrics.lockWait.record(start);
+				BookingDetails details = room.book(customerName, startDate, duration);
+				saved = Journal.book(this, room, details); // Record the booking so that it survives a restart
+			}
+		}
+		catch (Exception exception)
+		{
+			Metrics.bookingsRefused.increment();
+			throw exception;
+		}
+		saved.join(); // Wait until the booking has been saved
+		Metrics.book.record(start);
+	}
+
+	/**
+	 * This method is used to delete the bookings of a room.
+	 * It accepts the name of the customer and the room under consideration, and removes every booking the customer made for that room.
 	 * @param customerName the name of the customer who booked the room.
 	 * @param room the room that was booked the customer.
-	 * @throws Exception if the room was not booked by the name provided.
+	 * @throws Exception if the room was not booked by the name provided, or if this server is a replica.
 	 */
-	public synchronized void deleteBooking(String customerName, Room room) throws Exception
+	public void deleteBooking(String customerName, Room room) throws Exception
 	{
-		if(!room.details.customerName.equalsIgnoreCase(customerName))
+		Replication.checkWritable();
+		long start = Metrics.start();
+		CompletableFuture<Void> saved = null;
+		synchronized(room) // Lock the room, so that its journal records are queued in the same order as its changes
+		{
+			Metrics.lockWait.record(start);
+			for(BookingDetails details : this.customers.bookings(customerName, room)) // Only the bookings of this customer are visited
+				if(room.free(details))
+					saved = Journal.cancel(this, room, details); // Record the cancellation so that it survives a restart
+		}
+		if(saved == null)
 			throw new Exception("No booking was made by " + customerName);
-		room.free();
+		saved.join(); // Wait until the cancellations have been saved, the last one being saved after all the others
+		Metrics.deleteBooking.record(start);
 	}
 
 	/**
-	 * This method returns the rooms whose prices are lower than or equal to the price provided.
+	 * This method returns the rooms whose prices are lower than or equal to the price provided, sorted by price.
 	 * @param price the price of a room.
 	 * @return the list of rooms with that price.
 	 */
-	public synchronized List<Room> searchByPrice(int price)
+	public List<Room> searchByPrice(int price)
 	{
-		return this.rooms.stream().filter(room -> room.price <= price).collect(Collectors.toList());
+		long start = Metrics.start();
+		List<Room> rooms = this.index.cheaperThan(price);
+		Metrics.searchByPrice.record(start);
+		return rooms;
 	}
 
 	/**
@@ -219,32 +507,360 @@ public class Hotel
 	 * @param numberOfBeds the number of beds in a room.
 	 * @return the list of rooms with that number of beds.
 	 */
-	public synchronized List<Room> searchByBeds(int numberOfBeds)
+	public List<Room> searchByBeds(int numberOfBeds)
+	{
+		long start = Metrics.start();
+		List<Room> rooms = this.index.withBeds(numberOfBeds);
+		Metrics.searchByBeds.record(start);
+		return rooms;
+	}
+
+	/**
+	 * This method returns the rooms that include all of a set of amenities, sorted by price.
+	 * The bitmaps of the amenities are combined, so the descriptions of the rooms are never read.
+	 * @param amenities the bitmask of the amenities, see {@link Amenity}.
+	 * @return the list of rooms with all these amenities.
+	 */
+	public List<Room> searchByAmenities(int amenities)
+	{
+		long start = Metrics.start();
+		RoomIndex index = this.index;
+		RoomColumns columns = index.columns();
+		long[] matches = index.withAmenities(amenities);
+		int count = 0;
+		for(long word : matches)
+			count += Long.bitCount(word);
+
+		long[] sorted = new long[count]; // The price and the number of each room, in one long so that sorting needs no objects
+		int kept = 0;
+		for(int word = 0; word < matches.length; ++word)
+			for(long bits = matches[word]; bits != 0; bits &= bits - 1)
+			{
+				int number = word * 64 + Long.numberOfTrailingZeros(bits);
+				sorted[kept++] = (long) columns.price(number) << 32 | number;
+			}
+		Arrays.sort(sorted);
+		List<Room> rooms = this.rooms;
+		List<Room> found = new ArrayList<>(count);
+		for(long room : sorted)
+			found.add(rooms.get((int) room));
+		Metrics.searchByAmenities.record(start);
+		return found;
+	}
+
+	/**
+	 * This method returns the rooms that cost at most the price provided, have the number of beds provided and are free between two dates, sorted by price.
+	 * The bitmap of the number of beds is combined with the occupancy bitmaps, and the result is then matched against
+	 * whichever is shorter: the rooms up to that price, or the rooms in the combined bitmap.
+	 * @param price the highest price.
+	 * @param numberOfBeds the number of beds in a room.
+	 * @param from the first night.
+	 * @param to the day after the last night.
+	 * @return the list of rooms matching all the criteria.
+	 */
+	public List<Room> search(int price, int numberOfBeds, int from, int to)
+	{
+		long start = Metrics.start();
+		RoomIndex index = this.index;
+		long[] beds = index.bedsBitmap(numberOfBeds);
+		long[] occupied = this.occupancy.occupied(from, to);
+		long[] matches = new long[beds.length]; // The free rooms with that number of beds
+		int count = 0;
+		for(int word = 0; word < beds.length; ++word)
+		{
+			matches[word] = beds[word] & ~(word < occupied.length ? occupied[word] : 0);
+			count += Long.bitCount(matches[word]);
+		}
+
+		int cheaper = index.countCheaperThan(price);
+		List<Room> rooms = this.rooms;
+		List<Room> found = new ArrayList<>();
+		if(cheaper <= count) // Go through the rooms up to that price and keep those in the bitmap
+		{
+			for(int position = 0; position < cheaper; ++position)
+				if(RoomIndex.contains(matches, index.byPrice(position)))
+					found.add(rooms.get(index.byPrice(position)));
+		}
+		else // Go through the rooms in the bitmap and keep those up to that price
+		{
+			RoomColumns columns = index.columns(); // The prices are read from their column, so only the rooms that are kept are read
+			long[] sorted = new long[count]; // The price and the number of each room kept, in one long so that sorting needs no objects
+			int kept = 0;
+			for(int word = 0; word < matches.length; ++word)
+				for(long bits = matches[word]; bits != 0; bits &= bits - 1)
+				{
+					int number = word * 64 + Long.numberOfTrailingZeros(bits);
+					if(columns.price(number) <= price)
+						sorted[kept++] = (long) columns.price(number) << 32 | number;
+				}
+			Arrays.sort(sorted, 0, kept);
+			for(int i = 0; i < kept; ++i)
+				found.add(rooms.get((int) sorted[i]));
+		}
+		Metrics.search.record(start);
+		return found;
+	}
+
+	/**
+	 * This method passes one page of the rooms of this hotel on to an action, by number.
+	 * @param cursor the number of the first room of the page.
+	 * @param limit the highest number of rooms on the page.
+	 * @param action what is done with each room.
+	 * @return the cursor of the next page, or -1 if this is the last page.
+	 */
+	public int scanRooms(int cursor, int limit, Consumer<Room> action)
+	{
+		return Hotel.scan(this.rooms, cursor, limit, action);
+	}
+
+	/**
+	 * This method passes one page of the rooms that are free between two dates on to an action, by number.
+	 * Only the occupancy bitmaps are read, from the word of the cursor on, until the page is full.
+	 * @param from the first night.
+	 * @param to the day after the last night.
+	 * @param cursor the number of the room the page starts from.
+	 * @param limit the highest number of rooms on the page.
+	 * @param action what is done with each room.
+	 * @return the cursor of the next page, or -1 if this is the last page.
+	 */
+	public int scanEmptyRooms(int from, int to, int cursor, int limit, Consumer<Room> action)
+	{
+		long start = Metrics.start();
+		List<Room> rooms = this.rooms; // The rooms are read once, so that the bitmap and the list belong together
+		long[] occupied = this.occupancy.occupied(from, to);
+		int first = Math.max(0, cursor), passed = 0, next = -1;
+		for(int word = first >>> 6; word * 64 < rooms.size() && next < 0; ++word)
+		{
+			long free = word < occupied.length ? ~occupied[word] : -1L;
+			if(word == first >>> 6)
+				free &= -1L << (first & 63); // Skip the rooms before the cursor
+			for(; free != 0; free &= free - 1) // Visit each free room of this word
+			{
+				int number = word * 64 + Long.numberOfTrailingZeros(free);
+				if(number >= rooms.size())
+					break;
+				if(passed == limit) // The first room of the next page
+				{
+					next = number;
+					break;
+				}
+				action.accept(rooms.get(number));
+				++passed;
+			}
+		}
+		Metrics.emptyRooms.record(start);
+		return next;
+	}
+
+	/**
+	 * This method passes one page of the booked rooms of this hotel on to an action, by number.
+	 * Only the rooms that hold bookings are visited, and only the rooms of the page are kept while they are.
+	 * @param cursor the number of the room the page starts from.
+	 * @param limit the highest number of rooms on the page.
+	 * @param action what is done with each room.
+	 * @return the cursor of the next page, or -1 if this is the last page.
+	 */
+	public int scanBookedRooms(int cursor, int limit, Consumer<Room> action)
+	{
+		long start = Metrics.start();
+		PriorityQueue<Room> page = new PriorityQueue<>(Comparator.comparingInt((Room room) -> room.number).reversed()); // The rooms of the page and the first room after it, the last first
+		for(Room room : this.customers.rooms())
+			if(room.number >= cursor && room.hasBookings())
+			{
+				page.add(room);
+				if(page.size() > limit + 1)
+					page.poll();
+			}
+		List<Room> sorted = new ArrayList<>(page);
+		sorted.sort(Comparator.comparingInt(room -> room.number));
+		for(int i = 0; i < Math.min(limit, sorted.size()); ++i)
+			action.accept(sorted.get(i));
+		Metrics.bookedRooms.record(start);
+		return sorted.size() > limit ? sorted.get(limit).number : -1;
+	}
+
+	/**
+	 * This method passes one page of the rooms whose prices are lower than or equal to the price provided on to an action, sorted by price.
+	 * @param price the highest price.
+	 * @param cursor the position of the first room of the page in the rooms sorted by price.
+	 * @param limit the highest number of rooms on the page.
+	 * @param action what is done with each room.
+	 * @return the cursor of the next page, or -1 if this is the last page.
+	 */
+	public int scanByPrice(int price, int cursor, int limit, Consumer<Room> action)
 	{
-		return this.rooms.stream().filter(room -> room.numberOfBeds == numberOfBeds).collect(Collectors.toList());
+		long start = Metrics.start();
+		RoomIndex index = this.index;
+		int next = scanByPrice(index, index.countCheaperThan(price), null, cursor, limit, action);
+		Metrics.searchByPrice.record(start);
+		return next;
+	}
+
+	/**
+	 * This method passes one page of the rooms with the number of beds provided on to an action, by number.
+	 * @param numberOfBeds the number of beds in a room.
+	 * @param cursor the position of the first room of the page in the rooms with that number of beds.
+	 * @param limit the highest number of rooms on the page.
+	 * @param action what is done with each room.
+	 * @return the cursor of the next page, or -1 if this is the last page.
+	 */
+	public int scanByBeds(int numberOfBeds, int cursor, int limit, Consumer<Room> action)
+	{
+		long start = Metrics.start();
+		int next = Hotel.scan(this.index.withBeds(numberOfBeds), cursor, limit, action);
+		Metrics.searchByBeds.record(start);
+		return next;
+	}
+
+	/**
+	 * This method passes one page of the rooms that include all of a set of amenities on to an action, sorted by price.
+	 * @param amenities the bitmask of the amenities, see {@link Amenity}.
+	 * @param cursor the position of the first room of the page in the rooms sorted by price.
+	 * @param limit the highest number of rooms on the page.
+	 * @param action what is done with each room.
+	 * @return the cursor of the next page, or -1 if this is the last page.
+	 */
+	public int scanByAmenities(int amenities, int cursor, int limit, Consumer<Room> action)
+	{
+		long start = Metrics.start();
+		RoomIndex index = this.index;
+		int next = scanByPrice(index, index.columns().size(), index.withAmenities(amenities), cursor, limit, action);
+		Metrics.searchByAmenities.record(start);
+		return next;
+	}
+
+	/**
+	 * This method passes one page of the rooms that cost at most the price provided, have the number of beds provided
+	 * and are free between two dates on to an action, sorted by price.
+	 * @param price the highest price.
+	 * @param numberOfBeds the number of beds in a room.
+	 * @param from the first night.
+	 * @param to the day after the last night.
+	 * @param cursor the position of the first room of the page in the rooms sorted by price.
+	 * @param limit the highest number of rooms on the page.
+	 * @param action what is done with each room.
+	 * @return the cursor of the next page, or -1 if this is the last page.
+	 */
+	public int scanSearch(int price, int numberOfBeds, int from, int to, int cursor, int limit, Consumer<Room> action)
+	{
+		long start = Metrics.start();
+		RoomIndex index = this.index;
+		long[] beds = index.bedsBitmap(numberOfBeds);
+		long[] occupied = this.occupancy.occupied(from, to);
+		long[] matches = new long[beds.length]; // The free rooms with that number of beds
+		for(int word = 0; word < beds.length; ++word)
+			matches[word] = beds[word] & ~(word < occupied.length ? occupied[word] : 0);
+		int next = scanByPrice(index, index.countCheaperThan(price), matches, cursor, limit, action);
+		Metrics.search.record(start);
+		return next;
+	}
+
+	/**
+	 * This method passes one page of the cheapest rooms of an index that are in a bitmap on to an action, sorted by price.
+	 * The rooms are visited from the cursor on, so a page never visits the rooms of the pages before it.
+	 * @param index the index of the rooms.
+	 * @param count the number of the cheapest rooms that may be on a page.
+	 * @param bitmap the rooms that may be on a page, or null for any room.
+	 * @param cursor the position of the first room of the page in the rooms sorted by price.
+	 * @param limit the highest number of rooms on the page.
+	 * @param action what is done with each room.
+	 * @return the cursor of the next page, or -1 if this is the last page.
+	 */
+	private int scanByPrice(RoomIndex index, int count, long[] bitmap, int cursor, int limit, Consumer<Room> action)
+	{
+		List<Room> rooms = this.rooms;
+		int passed = 0;
+		for(int position = Math.max(0, cursor); position < count; ++position)
+		{
+			int number = index.byPrice(position);
+			if(bitmap != null && !RoomIndex.contains(bitmap, number))
+				continue;
+			if(passed == limit) // The first room of the next page
+				return position;
+			action.accept(rooms.get(number));
+			++passed;
+		}
+		return -1;
+	}
+
+	/**
+	 * This method passes one page of a list of rooms on to an action.
+	 * @param rooms the rooms.
+	 * @param cursor the position of the first room of the page.
+	 * @param limit the highest number of rooms on the page.
+	 * @param action what is done with each room.
+	 * @return the cursor of the next page, or -1 if this is the last page.
+	 */
+	private static int scan(List<Room> rooms, int cursor, int limit, Consumer<Room> action)
+	{
+		int end = (int) Math.min(rooms.size(), (long) Math.max(0, cursor) + limit);
+		for(int position = Math.max(0, cursor); position < end; ++position)
+			action.accept(rooms.get(position));
+		return end < rooms.size() ? end : -1;
 	}
 
 	/**
 	 * This method saves all the hotels in the server to the data file.
 	 * It iterates over each hotel and saves it before finally saving all to the data file.
+	 * The data is first written to a temporary file which then replaces the data file, so a crash never leaves a half-written data file behind.
+	 * The data file is written in the format set by hotel.format, either binary (see {@link Snapshot}) or text, and a data file of the other format is removed.
+	 * When the rooms are kept in a {@link MappedStore}, which never changes, only the bookings are saved.
+	 * Note: individual bookings are saved by the journal; this method is only called when the journal is compacted.
+	 * @throws IOException if the data file could not be written, in which case the data file is left as it was.
 	 */
-	public static void saveRooms()
+	public static void saveRooms() throws IOException
 	{
-		try
+		long start = Metrics.start();
+		String path;
+		Path temporary;
+		if(Config.storage.equals("mapped"))
 		{
-			PrintWriter writer = new PrintWriter(Hotel.savePath + "\\hotels.txt"); // Create a new printWriter to write the data to a system file
-			StringBuilder data = new StringBuilder(); // Create a new StringBuilder. It is going to be used to store all the data of a hotel.
-			for(Hotel hotel : Hotel.hotels) // Save each hotel in the server
-				saveHotel(data, hotel);
-			writer.print(data); // Write the hotel data to the file
-			writer.close(); // Close the writer
+			path = Hotel.bookingsPath;
+			temporary = Paths.get(path + ".tmp");
+			MappedStore.saveBookings(temporary);
 		}
-		catch (IOException exception)
+		else
 		{
-			exception.printStackTrace();
+			path = Config.format.equals("binary") ? Hotel.snapshotPath : Hotel.textPath;
+			temporary = Paths.get(path + ".tmp");
+			if(Config.format.equals("binary"))
+				Snapshot.save(temporary);
+			else
+				Hotel.saveText(temporary);
+		}
+		Metrics.dataFileBytes.add(Files.size(temporary));
+		Files.move(temporary, Paths.get(path), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		Metrics.saveRooms.record(start);
+		if(!Config.storage.equals("mapped")) // A data file of the other format is out of date from now on, and would be loaded instead if the format were switched back
+		{
+			Path other = Paths.get(Config.format.equals("binary") ? Hotel.textPath : Hotel.snapshotPath);
+			try
+			{
+				if(Files.deleteIfExists(other))
+					System.out.println("Removed " + other.getFileName() + ", Which Is Out Of Date Now That The Hotels Are Saved To " + Paths.get(path).getFileName());
+			}
+			catch (IOException exception) // The hotels have been saved all the same, the old file is removed on the next save
+			{
+				exception.printStackTrace();
+			}
 		}
 	}
 
+	/**
+	 * This method saves all the hotels in the server to a text data file.
+	 * @param file the file to be written.
+	 * @throws IOException if the file could not be written.
+	 */
+	protected static void saveText(Path file) throws IOException
+	{
+		PrintWriter writer = new PrintWriter(file.toFile()); // Create a new printWriter to write the data to a system file
+		StringBuilder data = new StringBuilder(); // Create a new StringBuilder. It is going to be used to store all the data of a hotel.
+		for(Hotel hotel : Hotel.getHotels()) // Save each hotel in the server
+			saveHotel(data, hotel);
+		writer.print(data); // Write the hotel data to the file
+		writer.close(); // Close the writer
+	}
+
 	/**
 	 * This method is used to save a single hotel.
 	 * @param mainFile the builder to which the data of the hotel will be attached.
@@ -268,38 +884,34 @@ public class Hotel
      * @param mainFile the builder to which the room data is saved.
      * @param room the room to be saved.
      */
-	private synchronized static void saveRoom(StringBuilder mainFile, Room room)
+	private static void saveRoom(StringBuilder mainFile, Room room)
 	{
 	    // Save the properties of the room to the data builder
 		mainFile.append("Room:").append("\r\n\t\t\t")
-				.append("description: ").append(room.description).append("\r\n\t\t\t")
+				.append("description: ").append(room.getDescription()).append("\r\n\t\t\t")
 				.append("price: ").append(room.price).append("\r\n\t\t\t")
 				.append("beds: ").append(room.numberOfBeds).append("\r\n\t\t\t")
-				.append("details: ")
-                .append("{ ")
-				//.append(" customer: ").append(room.details.customerName)     // No personal info shared.
-                .append(" duration: ").append(room.details.DurationInDays)
-                .append(" days from timestamp: ").append(room.details.timeStamp).append(" }");
+				.append("details:");
+		for(BookingDetails details : room.getBookings()) // Save each booking of the room on the same line
+			mainFile.append(" { ")
+					.append(" customer: ").append(URLEncoder.encode(details.customerName, StandardCharsets.UTF_8)) // Encoded, so that no name can break the line
+					.append(" duration: ").append(details.DurationInDays)
+					.append(" days from timestamp: ").append(details.timeStamp)
+					.append(" start: ").append(details.startDate).append(" }");
 		mainFile.append("\r\n\t\t");
 	}
 
     /**
-     * This method is used to load hotels from the data file.
+     * This method is used to load hotels from a text data file.
+     * @param file the file to be read.
+     * @throws IOException if the file could not be read.
      */
-	public static void loadRooms()
+	protected static void loadRooms(Path file) throws IOException
     {
-        try
-        {
-            List<String> data = Files.readAllLines(Paths.get(Hotel.savePath + "\\hotels.txt")); // Read all the lines in the data file
-            int currentHotel = 1;
-            while(currentHotel < data.size()) // While there are still more hotels to processed
-				currentHotel = loadHotel(data, currentHotel); // Load the hotel
-        }
-        catch (IOException exception)
-        {
-            exception.printStackTrace();
-            System.exit(-1); // Shutdown the server because the rooms cannot be loaded
-        }
+        List<String> data = Files.readAllLines(file); // Read all the lines in the data file
+        int currentHotel = 1;
+        while(currentHotel < data.size()) // While there are still more hotels to processed
+            currentHotel = loadHotel(data, currentHotel); // Load the hotel
     }
 
     /**
@@ -332,20 +944,22 @@ public class Hotel
 
         Hotel hotel = new Hotel(hotelName, hotelLocation, hotelRatings); // Create a new hotel
 
+        List<Room> rooms = new ArrayList<>();
         for(int i = 5; i < hotelFile.size(); i += 5)
-			loadRoom(hotel, hotelFile, i); // Load the rooms in the hotel
+			rooms.add(loadRoom(hotelFile, i)); // Load the rooms in the hotel
+        hotel.addRooms(rooms);
 
-        Hotel.hotels.add(hotel); // Add the newly loaded hotel to the main list of hotels
+        Hotel.addHotel(hotel); // Add the newly loaded hotel to the main list of hotels
 		return currentIndex;
     }
 
     /**
      * This method loads a single room from the data file.
-     * @param hotel the hotel being processed.
      * @param hotelFile the data file of the hotel.
      * @param start the starting index for the room properties in the data file.
+     * @return the room that was loaded.
      */
-    private static void loadRoom(Hotel hotel, List<String> hotelFile, int start)
+    private static Room loadRoom(List<String> hotelFile, int start)
 	{
 	    // Extract the details of the room
 		String line = hotelFile.get(start++);
@@ -356,20 +970,26 @@ public class Hotel
 		int beds = Integer.parseInt(line.substring(line.indexOf("beds: ") + 6));
 		String details = hotelFile.get(start);
 
-		// Extract its booking details
-		int startCust = details.indexOf("customer: ");
-		int startDur = details.indexOf("duration: ");
-		int startTime = details.indexOf("days from timestamp: ");
-		int end = details.indexOf(" }");
-
-		String customer = details.substring(startCust + 10, startDur - 1);
-		int duration = Integer.parseInt(details.substring(startDur + 10, startTime - 1));
-		long timestamp = Long.parseLong(details.substring(startTime + 21, end));
-
 		// Create the room and add it to the current hotel being processed
 		Room room = new Room(roomDescription, roomPrice, beds);
-		room.setDetails(new BookingDetails(customer, duration, timestamp));
-		hotel.rooms.add(room);
+		for(int open = details.indexOf("{ "); open >= 0; open = details.indexOf("{ ", open + 1)) // Extract each of its bookings
+		{
+			String booking = details.substring(open, details.indexOf(" }", open));
+			int startCust = booking.indexOf("customer: ");
+			int startDur = booking.indexOf("duration: ");
+			int startTime = booking.indexOf("days from timestamp: ");
+			int startDate = booking.indexOf("start: "); // Older data files do not save the start date, which was always the day of the booking
+
+			String customer = startCust < 0 ? BookingDetails.anonymous // Older data files do not save the name of the customer
+					: URLDecoder.decode(booking.substring(startCust + 10, startDur - 1), StandardCharsets.UTF_8);
+			int duration = Integer.parseInt(booking.substring(startDur + 10, startTime - 1));
+			long timestamp = Long.parseLong(booking.substring(startTime + 21, startDate < 0 ? booking.length() : startDate - 1));
+			if(duration <= 0 || timestamp <= 0) // Older data files save a room that has not been booked as a booking with no duration
+				continue;
+			int first = startDate < 0 ? BookingDetails.day(timestamp) : Integer.parseInt(booking.substring(startDate + 7));
+			room.setDetails(new BookingDetails(customer, first, duration, timestamp));
+		}
+		return room;
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,177 @@
+package hotel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * This class is used to keep the hotels of the server, so that a hotel can be found without going through every hotel.
+ * Hotels are found by their id, which is their position in the registry, and through hash indexes by location and by name, both ignoring case.
+ * Readers never lock: they read a view of the hotels and their indexes which is never changed once published. Adding a hotel only
+ * marks the view as out of date, and the first reader afterwards builds the next one, so loading many hotels does not copy them each time.
+ * Replacing every hotel, e.g. when a replica starts over from a snapshot of its primary, publishes the new view at once,
+ * so a reader either sees all the old hotels or all the new ones. The hotels sorted by rating are only sorted when a view is first read by rating.
+ */
+public class HotelRegistry
+{
+    private static final Comparator<Hotel> byRating = Comparator.<Hotel>comparingInt(hotel -> -hotel.getRatings()).thenComparingInt(hotel -> hotel.id);
+
+    /**
+     * This class is used to hold the hotels and their indexes as they were at one moment. It is never changed once published.
+     */
+    private static class View
+    {
+        private final List<Hotel> hotels; // Every hotel, by id
+        private final Map<String, List<Hotel>> locations = new HashMap<>(); // The hotels in each location, by id
+        private final Map<String, List<Hotel>> names = new HashMap<>(); // The hotels with each name, by id
+        private volatile List<Hotel> ratings; // Every hotel, the best rated first, or null if it has not been sorted yet
+
+        private View(List<Hotel> hotels)
+        {
+            this.hotels = Collections.unmodifiableList(new ArrayList<>(hotels));
+            for(Hotel hotel : this.hotels)
+            {
+                this.locations.computeIfAbsent(key(hotel.getLocation()), location -> new ArrayList<>()).add(hotel);
+                this.names.computeIfAbsent(key(hotel.getName()), name -> new ArrayList<>()).add(hotel);
+            }
+            this.locations.replaceAll((location, list) -> Collections.unmodifiableList(list));
+            this.names.replaceAll((name, list) -> Collections.unmodifiableList(list));
+        }
+    }
+
+    private final List<Hotel> hotels = new ArrayList<>(); // Every hotel, by id; only read or changed while the registry is locked
+    private volatile View view = new View(Collections.emptyList()); // What readers see, or null if a hotel has been added since it was built
+
+    /**
+     * This method adds a hotel and gives it the next id.
+     * @param hotel the hotel to be added.
+     */
+    protected synchronized void add(Hotel hotel)
+    {
+        hotel.id = this.hotels.size();
+        this.hotels.add(hotel);
+        this.view = null;
+    }
+
+    /**
+     * This method removes every hotel, before the hotels are loaded again.
+     */
+    protected synchronized void clear()
+    {
+        this.hotels.clear();
+        this.view = new View(this.hotels);
+    }
+
+    /**
+     * This method replaces every hotel at once, e.g. when a replica starts over from a new snapshot of its primary.
+     * @param replacements the new hotels, by id.
+     */
+    protected synchronized void replace(List<Hotel> replacements)
+    {
+        this.hotels.clear();
+        for(Hotel hotel : replacements)
+        {
+            hotel.id = this.hotels.size();
+            this.hotels.add(hotel);
+        }
+        this.view = new View(this.hotels);
+    }
+
+    /**
+     * This method returns the current view of the hotels, building it if a hotel has been added since it was last built.
+     * @return the view.
+     */
+    private View view()
+    {
+        View view = this.view;
+        if(view != null)
+            return view;
+        synchronized(this)
+        {
+            if(this.view == null) // Only the first reader since a hotel was added builds the view
+                this.view = new View(this.hotels);
+            return this.view;
+        }
+    }
+
+    /**
+     * This method returns every hotel.
+     * @return the list of hotels, by id, which never changes.
+     */
+    protected List<Hotel> getHotels()
+    {
+        return view().hotels;
+    }
+
+    /**
+     * This method returns the hotel with an id.
+     * @param id the id of the hotel.
+     * @return the hotel, or null if there is no hotel with that id.
+     */
+    protected Hotel getHotel(int id)
+    {
+        List<Hotel> hotels = view().hotels;
+        return id >= 0 && id < hotels.size() ? hotels.get(id) : null;
+    }
+
+    /**
+     * This method returns the number of hotels.
+     * @return the number of hotels.
+     */
+    protected int size()
+    {
+        return view().hotels.size();
+    }
+
+    /**
+     * This method returns the hotels in a location.
+     * @param location the location. Case is ignored.
+     * @return the list of hotels, by id; empty if there are none.
+     */
+    protected List<Hotel> getHotelsIn(String location)
+    {
+        return view().locations.getOrDefault(key(location), Collections.emptyList());
+    }
+
+    /**
+     * This method returns the hotels with a name.
+     * @param name the name. Case is ignored.
+     * @return the list of hotels, by id; empty if there are none.
+     */
+    protected List<Hotel> getHotelsNamed(String name)
+    {
+        return view().names.getOrDefault(key(name), Collections.emptyList());
+    }
+
+    /**
+     * This method returns every hotel, the best rated first. Hotels with the same rating are sorted by id.
+     * @return the list of hotels.
+     */
+    protected List<Hotel> getHotelsByRating()
+    {
+        View view = view();
+        List<Hotel> sorted = view.ratings;
+        if(sorted == null) // Two readers may both sort a new view, which is harmless
+        {
+            List<Hotel> hotels = new ArrayList<>(view.hotels);
+            hotels.sort(HotelRegistry.byRating);
+            sorted = Collections.unmodifiableList(hotels);
+            view.ratings = sorted;
+        }
+        return sorted;
+    }
+
+    /**
+     * This method returns the key of a location or a name in the indexes.
+     * @param value the location or name.
+     * @return the key.
+     */
+    private static String key(String value)
+    {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,191 @@
+package hotel;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class is used to search the free rooms of every hotel at once, e.g. any hotel in Santorini, at most $150, 2 beds, for these nights.
+ * The hotels are searched in parallel on a pool of hotel.searchThreads threads, and only the best rooms are kept, ranked either by price or by rating.
+ * The search stops early once it knows no more rooms can make it to the top:
+ * every hotel only looks for rooms cheaper than the worst room kept so far, which falls as the hotels are searched,
+ * and ranked by rating, the hotels are searched one rating at a time, from the best, until enough rooms have been found.
+ */
+public class HotelSearch
+{
+    /**
+     * The order in which the rooms found are ranked.
+     */
+    public enum Order
+    {
+        PRICE, // The cheapest rooms first, then the best rated hotels
+        RATING // The best rated hotels first, then the cheapest rooms
+    }
+
+    private static final ForkJoinPool pool = new ForkJoinPool(Config.searchThreads); // The threads searching the hotels, shared by every search
+
+    // Room numbers and hotel ids break the remaining ties, so that the same search always ranks its rooms the same way
+    private static final Comparator<Room> byPrice = Comparator.<Room>comparingInt(room -> room.price)
+            .thenComparingInt(room -> -room.hotel.getRatings()).thenComparingInt(room -> room.hotel.id).thenComparingInt(room -> room.number);
+    private static final Comparator<Room> byRating = Comparator.<Room>comparingInt(room -> -room.hotel.getRatings())
+            .thenComparingInt(room -> room.price).thenComparingInt(room -> room.hotel.id).thenComparingInt(room -> room.number);
+
+    /**
+     * This class is used to keep the best rooms found so far, whichever thread finds them.
+     */
+    private static class Best
+    {
+        private final Comparator<Room> order;
+        private final int limit;
+        private final PriorityQueue<Room> rooms; // The rooms kept, the worst first, so that it is the one replaced
+        private volatile int highestPrice = Integer.MAX_VALUE; // The price of the worst room kept, once as many rooms as the limit are kept
+
+        private Best(Comparator<Room> order, int limit)
+        {
+            this.order = order;
+            this.limit = limit;
+            this.rooms = new PriorityQueue<>(Math.min(limit, 1024), order.reversed());
+        }
+
+        /**
+         * This method offers a room found.
+         * @param room the room.
+         * @return false if the room is not good enough to be kept.
+         */
+        private synchronized boolean offer(Room room)
+        {
+            if(this.rooms.size() == this.limit)
+            {
+                if(this.order.compare(room, this.rooms.peek()) >= 0)
+                    return false;
+                this.rooms.poll();
+            }
+            this.rooms.add(room);
+            if(this.rooms.size() == this.limit)
+                this.highestPrice = this.rooms.peek().price;
+            return true;
+        }
+
+        /**
+         * This method checks whether as many rooms as the limit have been kept.
+         * @return true if no more rooms are needed.
+         */
+        private synchronized boolean isFull()
+        {
+            return this.rooms.size() == this.limit;
+        }
+
+        /**
+         * This method returns the rooms kept, best first.
+         * @return the list of rooms.
+         */
+        private synchronized List<Room> sorted()
+        {
+            List<Room> sorted = new ArrayList<>(this.rooms);
+            sorted.sort(this.order);
+            return sorted;
+        }
+    }
+
+    /**
+     * This class is used to search a range of hotels, splitting it in two until a single hotel is left.
+     */
+    private static class Fan extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L; // RecursiveAction is serializable, although a search is never serialized
+
+        private final List<Hotel> hotels;
+        private final int first, last; // The range of hotels searched, the last one excluded
+        private final int price, numberOfBeds, from, to;
+        private final Best best;
+
+        private Fan(List<Hotel> hotels, int first, int last, int price, int numberOfBeds, int from, int to, Best best)
+        {
+            this.hotels = hotels;
+            this.first = first;
+            this.last = last;
+            this.price = price;
+            this.numberOfBeds = numberOfBeds;
+            this.from = from;
+            this.to = to;
+            this.best = best;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if(this.last - this.first > 1)
+            {
+                int middle = (this.first + this.last) >>> 1;
+                invokeAll(new Fan(this.hotels, this.first, middle, this.price, this.numberOfBeds, this.from, this.to, this.best),
+                        new Fan(this.hotels, middle, this.last, this.price, this.numberOfBeds, this.from, this.to, this.best));
+                return;
+            }
+            if(this.last == this.first)
+                return;
+
+            // A room dearer than the worst room kept cannot make it: ranked by rating, the search stops with the rating of the worst room kept,
+            // so that room always has the same rating as the rooms of this hotel
+            int price = Math.min(this.price, this.best.highestPrice);
+            for(Room room : this.hotels.get(this.first).search(price, this.numberOfBeds, this.from, this.to)) // The rooms are sorted by price
+                if(!this.best.offer(room)) // If this room is not good enough, the dearer rooms that follow are not either
+                    break;
+        }
+    }
+
+    /**
+     * This method sorts hotels by rating, the best rated first.
+     * @param hotels the hotels.
+     * @return a sorted copy of the hotels.
+     */
+    private static List<Hotel> byRating(List<Hotel> hotels)
+    {
+        List<Hotel> sorted = new ArrayList<>(hotels);
+        sorted.sort(Comparator.comparingInt(hotel -> -hotel.getRatings()));
+        return sorted;
+    }
+
+    /**
+     * This method searches every hotel for free rooms.
+     * @param location the location of the hotels, or null for any location. Case is ignored.
+     * @param price the highest price.
+     * @param numberOfBeds the number of beds in a room.
+     * @param from the first night.
+     * @param to the day after the last night.
+     * @param order how the rooms are ranked.
+     * @param limit the highest number of rooms returned.
+     * @return the best rooms found, best first. The hotel of each room is {@code room.hotel}.
+     */
+    public static List<Room> search(String location, int price, int numberOfBeds, int from, int to, Order order, int limit)
+    {
+        long start = Metrics.start();
+        if(limit <= 0)
+            return new ArrayList<>();
+        Best best = new Best(order == Order.PRICE ? HotelSearch.byPrice : HotelSearch.byRating, limit);
+        if(order == Order.PRICE)
+        {
+            List<Hotel> hotels = location == null ? Hotel.getHotels() : Hotel.getHotelsIn(location);
+            HotelSearch.pool.invoke(new Fan(hotels, 0, hotels.size(), price, numberOfBeds, from, to, best));
+        }
+        else
+        {
+            // The hotels sorted by rating, searched one run of hotels with the same rating at a time
+            List<Hotel> hotels = location == null ? Hotel.getHotelsByRating() : HotelSearch.byRating(Hotel.getHotelsIn(location));
+            for(int first = 0, last; first < hotels.size(); first = last)
+            {
+                last = first + 1;
+                while(last < hotels.size() && hotels.get(last).getRatings() == hotels.get(first).getRatings())
+                    ++last;
+                HotelSearch.pool.invoke(new Fan(hotels, first, last, price, numberOfBeds, from, to, best));
+                if(best.isFull()) // No room of a hotel with a lower rating can make it
+                    break;
+            }
+        }
+        List<Room> found = best.sorted();
+        Metrics.searchAll.record(start);
+        return found;
+    }
+}
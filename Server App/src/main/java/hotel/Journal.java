@@ -0,0 +1,290 @@
+package hotel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is used to represent the booking journal of the server.
+ * Instead of rewriting the whole data file after every change, each booking and cancellation is appended to the journal as one short record.
+ * Records from all the connections are queued and written in batches by a single writer thread, which is also responsible for compacting the journal
+ * into the data file once it grows past the compaction threshold.
+ * Record format: "B {hotel} {room} {start} {duration} {timestamp} {customer}" for a booking, the name of the customer taking the rest of the line,
+ * and "C {hotel} {room} {start}" for a cancellation. Bookings recorded before names were journaled belong to {@link BookingDetails#anonymous}.
+ * Once a batch has been saved, its records are also shipped to the replicas of the server, see {@link Replication}.
+ */
+public class Journal
+{
+    /**
+     * The point at which a record is considered saved and the client can be told that the change was successful.
+     */
+    protected enum Durability
+    {
+        FSYNC, // Every record is forced to the disk on its own
+        BATCH, // Every batch of records is forced to the disk once
+        BUFFERED // Records are handed to the operating system, which writes them to the disk whenever it sees fit
+    }
+
+    /**
+     * This class is used to represent a record waiting in the queue together with the promise given to the connection that is waiting for it.
+     */
+    private static class Entry
+    {
+        private final String text;
+        private final byte[] record;
+        private final CompletableFuture<Void> saved = new CompletableFuture<>();
+
+        private Entry(String record)
+        {
+            this.text = record;
+            this.record = (record + "\r\n").getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    protected static final String journalPath = Hotel.savePath + "\\journal.txt"; // The file in which the records are appended
+    protected static final String damagedPath = Hotel.savePath + "\\journal.damaged.txt"; // The records that could not be replayed, kept for inspection
+
+    private static final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>(); // The records waiting to be written
+    private static FileChannel channel; // For appending records to the journal
+    private static int records = 0; // The number of records appended since the last compaction
+
+    /**
+     * This method opens the journal when the server starts.
+     * Any records left over from the previous run are replayed on top of the loaded hotels and then compacted into the data file.
+     * Afterwards the writer thread is started.
+     */
+    protected static synchronized void open()
+    {
+        Journal.replay();
+        Journal.compact();
+
+        Thread thread = new Thread(Journal::write, "Journal Writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * This method queues the booking of a room.
+     * It must be called while the room is locked, so that the records of a room are queued in the same order as the changes were made.
+     * @param hotel the hotel that contains the room.
+     * @param room the room that was booked.
+     * @param details the details of the booking.
+     * @return a future that completes once the record has been saved according to the durability setting.
+     */
+    protected static CompletableFuture<Void> book(Hotel hotel, Room room, BookingDetails details)
+    {
+        return Journal.append("B " + hotel.id + " " + room.number + " " + details.startDate + " " + details.DurationInDays + " " + details.timeStamp + " " + details.customerName);
+    }
+
+    /**
+     * This method queues the cancellation of a booking.
+     * It must be called while the room is locked, so that the records of a room are queued in the same order as the changes were made.
+     * @param hotel the hotel that contains the room.
+     * @param room the room whose booking was removed.
+     * @param details the details of the booking that was removed.
+     * @return a future that completes once the record has been saved according to the durability setting.
+     */
+    protected static CompletableFuture<Void> cancel(Hotel hotel, Room room, BookingDetails details)
+    {
+        return Journal.append("C " + hotel.id + " " + room.number + " " + details.startDate);
+    }
+
+    /**
+     * This method queues a single record for the writer thread.
+     * @param record the record to be appended.
+     * @return a future that completes once the record has been saved.
+     */
+    private static CompletableFuture<Void> append(String record)
+    {
+        Entry entry = new Entry(record);
+        Journal.queue.add(entry);
+        return entry.saved;
+    }
+
+    /**
+     * This method is the main loop of the writer thread.
+     * It waits for a record, then collects more records until either the batch is full or the batch window has passed, and writes them all at once.
+     */
+    private static void write()
+    {
+        List<Entry> batch = new ArrayList<>();
+        while(true)
+        {
+            try
+            {
+                batch.add(Journal.queue.take()); // Wait for the first record of the batch
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Config.batchWindow);
+                while(batch.size() < Config.batchSize)
+                {
+                    Entry entry = Journal.queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if(entry == null) // If the batch window has passed
+                        break;
+                    batch.add(entry);
+                }
+                Journal.flush(batch);
+            }
+            catch (InterruptedException exception)
+            {
+                return;
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * This method writes a batch of records to the journal and lets the waiting connections know that their records have been saved.
+     * The changes of the records have already been made to the hotels, and would be saved by the next compaction, so a batch that cannot be written
+     * stops the server: on the next start only the records that reached the journal are replayed.
+     * @param batch the records to be written.
+     */
+    private static synchronized void flush(List<Entry> batch)
+    {
+        long start = Metrics.start();
+        try
+        {
+            for(Entry entry : batch)
+            {
+                Journal.channel.write(ByteBuffer.wrap(entry.record));
+                Metrics.journalBytes.add(entry.record.length);
+                if(Config.durability == Durability.FSYNC)
+                    Journal.channel.force(false);
+            }
+            if(Config.durability == Durability.BATCH)
+                Journal.channel.force(false);
+            Metrics.journalFlush.record(start);
+            List<String> records = new ArrayList<>(batch.size());
+            for(Entry entry : batch)
+            {
+                records.add(entry.text);
+                entry.saved.complete(null);
+            }
+            Replication.ship(records); // Only saved records reach the replicas, in the order of the journal
+        }
+        catch (IOException exception)
+        {
+            exception.printStackTrace();
+            System.exit(-1); // Shutdown the server because changes can no longer be saved, and no client is told that an unsaved change was made
+        }
+
+        Journal.records += batch.size(); // Only records that have been written
+        if(Journal.records >= Config.compactionThreshold)
+            Journal.compact();
+    }
+
+    /**
+     * This method saves all the hotels to the data file and then empties the journal.
+     * Replaying a record only sets the state of a room, so a record that ends up in both the data file and the journal is harmless.
+     * The journal is only emptied once the data file has been written and moved into place. If the data file cannot be written, the journal keeps
+     * every record and the compaction is tried again after another hotel.compaction records.
+     */
+    protected static synchronized void compact()
+    {
+        try
+        {
+            if(Journal.channel == null)
+                Journal.channel = FileChannel.open(Paths.get(Journal.journalPath), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        catch (IOException exception)
+        {
+            exception.printStackTrace();
+            System.exit(-1); // Shutdown the server because changes can no longer be saved
+        }
+        Journal.records = 0;
+        try
+        {
+            Hotel.saveRooms();
+        }
+        catch (IOException exception) // The journal still holds every change since the last data file that was saved
+        {
+            System.out.println("Could Not Save The Data File, The Journal Is Kept: " + exception);
+            return;
+        }
+        try
+        {
+            Journal.channel.truncate(0); // Start over with an empty journal
+        }
+        catch (IOException exception)
+        {
+            exception.printStackTrace();
+            System.exit(-1); // Shutdown the server because changes can no longer be saved
+        }
+    }
+
+    /**
+     * This method applies a record to the hotels, without appending it to the journal.
+     * A record only sets the state of a room, so applying a record whose change the hotels already hold is harmless.
+     * @param line the record.
+     * @throws RuntimeException if the record is damaged or refers to a room that does not exist.
+     */
+    protected static void apply(String line)
+    {
+        String[] record = line.split(" ", 7); // The name of the customer may contain spaces
+        Hotel hotel = Hotel.getHotel(Integer.parseInt(record[1]));
+        Room room = hotel.getRooms().get(Integer.parseInt(record[2]));
+        if(record[0].equals("B")) // If the record is a booking
+        {
+            String customer = record.length > 6 ? record[6] : BookingDetails.anonymous; // Older records do not hold the name of the customer
+            room.setDetails(new BookingDetails(customer, Integer.parseInt(record[3]), Integer.parseInt(record[4]), Long.parseLong(record[5])));
+        }
+        else if(record[0].equals("C")) // If the record is a cancellation
+            room.free(Integer.parseInt(record[3]));
+        else
+            throw new IllegalArgumentException("Unknown record " + record[0]);
+    }
+
+    /**
+     * This method applies the records of the journal to the hotels that were loaded from the data file.
+     * A damaged record, e.g. one that was only partially written because the server crashed, is skipped and the replay goes on.
+     * Since the journal is emptied once it has been replayed, the damaged records are first appended to the damaged records file,
+     * and the server stops if they cannot be kept there.
+     */
+    private static void replay()
+    {
+        Path path = Paths.get(Journal.journalPath);
+        if(!Files.exists(path)) // If there is no journal, there is nothing to replay
+            return;
+
+        try
+        {
+            List<String> data = Files.readAllLines(path); // Read all the records in the journal
+            List<String> damaged = new ArrayList<>();
+            int replayed = 0;
+            for(String line : data)
+            {
+                if(line.isBlank())
+                    continue;
+                try
+                {
+                    Journal.apply(line);
+                    ++replayed;
+                }
+                catch (RuntimeException exception) // Keep the record, so that it is not lost when the journal is emptied
+                {
+                    damaged.add(line);
+                }
+            }
+            System.out.println("Replayed " + replayed + " Journal Records");
+            if(!damaged.isEmpty())
+            {
+                Files.write(Paths.get(Journal.damagedPath), damaged, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                System.out.println("Skipped " + damaged.size() + " Damaged Journal Records, Kept In " + Paths.get(Journal.damagedPath).getFileName());
+            }
+        }
+        catch (IOException exception)
+        {
+            exception.printStackTrace();
+            System.exit(-1); // Shutdown the server because the rooms cannot be loaded, or the damaged records would be lost
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package hotel;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class is used to record how long an operation of the server takes, from many threads at once.
+ * Latencies are counted in buckets whose width grows with the latency: every power of two, in nanoseconds, is split into 16 buckets,
+ * so any latency is known to within about 6% while the histogram takes the same few kilobytes whatever it holds.
+ * Recording never locks: it adds one to a bucket, one to the count and the latency to the total.
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKETS = 16; // The number of buckets each power of two is split into
+    private static final int SUB_BITS = 4; // The number of bits needed to count the buckets of a power of two
+
+    private final AtomicLongArray counts = new AtomicLongArray(64 * SUB_BUCKETS);
+    private final LongAdder count = new LongAdder(); // The number of latencies recorded
+    private final LongAdder total = new LongAdder(); // The sum of the latencies recorded, in nanoseconds
+    private final AtomicLong max = new AtomicLong(); // The highest latency recorded, in nanoseconds
+
+    /**
+     * This method records the time an operation took.
+     * @param start when the operation started, as returned by {@link Metrics#start()}. Nothing is recorded if metrics are disabled.
+     */
+    public void record(long start)
+    {
+        if(start == 0) // If metrics are disabled
+            return;
+        recordNanos(System.nanoTime() - start);
+    }
+
+    /**
+     * This method records a latency.
+     * @param nanoseconds the latency in nanoseconds.
+     */
+    public void recordNanos(long nanoseconds)
+    {
+        long latency = Math.max(0, nanoseconds);
+        this.counts.incrementAndGet(bucket(latency));
+        this.count.increment();
+        this.total.add(latency);
+        if(latency > this.max.get()) // Only contend for the maximum when it changes
+            this.max.accumulateAndGet(latency, Math::max);
+    }
+
+    /**
+     * This method returns the number of latencies recorded.
+     * @return the number of latencies.
+     */
+    public long getCount()
+    {
+        return this.count.sum();
+    }
+
+    /**
+     * This method returns the average latency.
+     * @return the average latency in nanoseconds.
+     */
+    public long getMean()
+    {
+        long count = this.count.sum();
+        return count == 0 ? 0 : this.total.sum() / count;
+    }
+
+    /**
+     * This method returns the highest latency recorded.
+     * @return the highest latency in nanoseconds.
+     */
+    public long getMax()
+    {
+        return this.max.get();
+    }
+
+    /**
+     * This method returns the latency below which a share of the latencies fall.
+     * Latencies recorded while the buckets are being read may or may not be included.
+     * @param percentile the share of the latencies, from 0 to 100.
+     * @return the highest latency of the bucket holding that share, in nanoseconds.
+     */
+    public long getPercentile(double percentile)
+    {
+        long[] counts = new long[this.counts.length()];
+        long count = 0;
+        for(int i = 0; i < counts.length; ++i)
+            count += counts[i] = this.counts.get(i);
+        long rank = (long)Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for(int i = 0; i < counts.length; ++i)
+        {
+            seen += counts[i];
+            if(seen >= rank && seen > 0)
+                return Math.min(getMax(), highest(i));
+        }
+        return getMax();
+    }
+
+    /**
+     * This method finds the bucket of a latency.
+     * Latencies below 16 nanoseconds each have their own bucket; above, the bucket is found from the highest bit of the latency and the 4 bits after it.
+     * @param nanoseconds the latency in nanoseconds.
+     * @return the index of the bucket.
+     */
+    private static int bucket(long nanoseconds)
+    {
+        if(nanoseconds < SUB_BUCKETS)
+            return (int)nanoseconds;
+        int shift = 63 - Long.numberOfLeadingZeros(nanoseconds) - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int)((nanoseconds >>> shift) - SUB_BUCKETS);
+    }
+
+    /**
+     * This method returns the highest latency a bucket holds.
+     * @param bucket the index of the bucket.
+     * @return the highest latency in nanoseconds.
+     */
+    private static long highest(int bucket)
+    {
+        if(bucket < SUB_BUCKETS)
+            return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long)(bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,361 @@
+package hotel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class is used to keep the rooms of the hotels in a memory-mapped file instead of on the heap, when the server runs with hotel.storage=mapped.
+ * Every room has a fixed-size slot holding its price, its number of beds and the position of its description in a pool of strings at the end of the file.
+ * Opening the file only maps it, so the server starts without reading the rooms, and a room object is only created while it is being used.
+ * The rooms never change, so the file is only written when it is created. Bookings are kept on the heap with the rooms that hold them,
+ * and are saved to a separate bookings file when the journal is compacted, which only takes as long as there are bookings.
+ * File format (version 1):
+ *   int magic, int version, int hotels, int reserved, long position of the string pool,
+ *   then for each hotel: int name, int location, int ratings, int rooms, long position of the slots, long reserved,
+ *   then the slots of each hotel: int description, int price, int beds, int reserved,
+ *   then the string pool: each string as an int length followed by its UTF-8 bytes. Strings are referred to by their position in the pool.
+ */
+public class MappedStore
+{
+    private static final int MAGIC = 0x48544C4D; // "HTLM"
+    private static final int BOOKINGS_MAGIC = 0x48544C42; // "HTLB"
+    private static final int VERSION = 1;
+    private static final int BOOKINGS_VERSION = 2; // Version 1 of the bookings file did not save the name of the customer
+    private static final int HEADER = 24; // The size of the header of the file
+    private static final int HOTEL = 32; // The size of the entry of each hotel
+    private static final int SLOT = 16; // The size of the slot of each room
+
+    /**
+     * This class is used to present the slots of a hotel as its list of rooms.
+     * The room of a slot is created when it is first read, and is shared by everybody who reads it until it is no longer used,
+     * so that locking a room works as it does on the heap. Rooms with bookings stay in use, since the hotel keeps their bookings.
+     */
+    private static class MappedRooms extends AbstractList<Room> implements RandomAccess
+    {
+        private final ByteBuffer slots;
+        private final int size;
+        private final Strings strings;
+        private Hotel hotel; // Set once the hotel has been created
+        private final Map<Integer, Materialized> rooms = new ConcurrentHashMap<>(); // The rooms that may still be in use, by number
+        private final ReferenceQueue<Room> collected = new ReferenceQueue<>(); // The rooms that are no longer used
+
+        /**
+         * This class is used to remember which slot a room that is no longer used came from.
+         */
+        private static class Materialized extends WeakReference<Room>
+        {
+            private final int number;
+
+            private Materialized(Room room, ReferenceQueue<Room> queue)
+            {
+                super(room, queue);
+                this.number = room.number;
+            }
+        }
+
+        private MappedRooms(ByteBuffer slots, int size, Strings strings)
+        {
+            this.slots = slots;
+            this.size = size;
+            this.strings = strings;
+        }
+
+        @Override
+        public Room get(int number)
+        {
+            if(number < 0 || number >= this.size)
+                throw new IndexOutOfBoundsException("Index: " + number + ", Size: " + this.size);
+            for(Object gone; (gone = this.collected.poll()) != null; ) // Forget the rooms that are no longer used
+                this.rooms.remove(((Materialized) gone).number, gone);
+
+            while(true)
+            {
+                Materialized reference = this.rooms.get(number);
+                Room room = reference == null ? null : reference.get();
+                if(room != null)
+                    return room;
+                room = new Room(this.strings.get(this.slots.getInt(number * SLOT)), price(number), beds(number));
+                room.number = number;
+                room.hotel = this.hotel;
+                Materialized created = new Materialized(room, this.collected);
+                if(reference == null ? this.rooms.putIfAbsent(number, created) == null : this.rooms.replace(number, reference, created))
+                    return room;
+                // Another thread created the room first, so use that one
+            }
+        }
+
+        /**
+         * This method returns the price of a room without creating the room.
+         * @param number the number of the room.
+         * @return the price of the room.
+         */
+        private int price(int number)
+        {
+            return this.slots.getInt(number * SLOT + 4);
+        }
+
+        /**
+         * This method returns the number of beds of a room without creating the room.
+         * @param number the number of the room.
+         * @return the number of beds of the room.
+         */
+        private int beds(int number)
+        {
+            return this.slots.getInt(number * SLOT + 8);
+        }
+
+        /**
+         * This method returns the amenities of a room without creating the room.
+         * @param number the number of the room.
+         * @return the bitmask of the amenities of the room.
+         */
+        private int amenities(int number)
+        {
+            return Descriptions.amenities(Descriptions.id(this.strings.get(this.slots.getInt(number * SLOT))));
+        }
+
+        @Override
+        public int size()
+        {
+            return this.size;
+        }
+    }
+
+    /**
+     * This class is used to read the strings of the pool, sharing one String between all the rooms that use it.
+     */
+    private static class Strings
+    {
+        private final ByteBuffer pool;
+        private final Map<Integer, String> strings = new ConcurrentHashMap<>(); // The strings read so far, by position
+
+        private Strings(ByteBuffer pool)
+        {
+            this.pool = pool;
+        }
+
+        private String get(int position)
+        {
+            return this.strings.computeIfAbsent(position, start -> {
+                byte[] bytes = new byte[this.pool.getInt(start)];
+                this.pool.get(start + 4, bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            });
+        }
+    }
+
+    /**
+     * This method writes the rooms of all the hotels in the server to a new store, together with their bookings.
+     * @param file the file of the store.
+     * @param bookings the file of the bookings.
+     * @throws IOException if the files could not be written.
+     */
+    protected static void create(Path file, Path bookings) throws IOException
+    {
+        List<Hotel> hotels = Hotel.getHotels();
+        Map<String, Integer> positions = new HashMap<>(); // The position of each string in the pool
+        ByteArrayOutputStream pool = new ByteArrayOutputStream();
+        long position = HEADER + (long) hotels.size() * HOTEL;
+        for(Hotel hotel : hotels)
+            position += (long) hotel.getRooms().size() * SLOT;
+
+        try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)))
+        {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(hotels.size());
+            output.writeInt(0);
+            output.writeLong(position); // The string pool follows the slots
+
+            long slots = HEADER + (long) hotels.size() * HOTEL;
+            for(Hotel hotel : hotels)
+            {
+                output.writeInt(intern(hotel.getName(), positions, pool));
+                output.writeInt(intern(hotel.getLocation(), positions, pool));
+                output.writeInt(hotel.getRatings());
+                output.writeInt(hotel.getRooms().size());
+                output.writeLong(slots);
+                output.writeLong(0);
+                slots += (long) hotel.getRooms().size() * SLOT;
+            }
+            for(Hotel hotel : hotels)
+                for(Room room : hotel.getRooms())
+                {
+                    output.writeInt(intern(room.getDescription(), positions, pool));
+                    output.writeInt(room.price);
+                    output.writeInt(room.numberOfBeds);
+                    output.writeInt(0);
+                }
+            pool.writeTo(output);
+        }
+        saveBookings(bookings);
+    }
+
+    /**
+     * This method adds a string to the pool, unless it is already there.
+     * @param string the string being added.
+     * @param positions the position of each string already in the pool.
+     * @param pool the strings written so far.
+     * @return the position of the string in the pool.
+     */
+    private static int intern(String string, Map<String, Integer> positions, ByteArrayOutputStream pool)
+    {
+        return positions.computeIfAbsent(string, key -> {
+            int position = pool.size();
+            byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+            pool.write(bytes.length >>> 24);
+            pool.write(bytes.length >>> 16);
+            pool.write(bytes.length >>> 8);
+            pool.write(bytes.length);
+            pool.write(bytes, 0, bytes.length);
+            return position;
+        });
+    }
+
+    /**
+     * This method maps a store and adds its hotels to the server, then loads their bookings.
+     * @param file the file of the store.
+     * @param bookings the file of the bookings.
+     * @throws IOException if the files could not be read, or the store was written in a newer format.
+     */
+    protected static void open(Path file, Path bookings) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) // The mappings stay valid after the channel is closed
+        {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER);
+            if(header.getInt(0) != MAGIC)
+                throw new IOException(file + " is not a room store");
+            if(header.getInt(4) > VERSION)
+                throw new IOException(file + " was written in version " + header.getInt(4) + " of the room store format, which this server does not support");
+            int hotels = header.getInt(8);
+            long position = header.getLong(16);
+
+            Strings strings = new Strings(channel.map(FileChannel.MapMode.READ_ONLY, position, channel.size() - position));
+            ByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, HEADER, (long) hotels * HOTEL);
+            for(int h = 0; h < hotels; ++h)
+            {
+                int entry = h * HOTEL;
+                int size = table.getInt(entry + 12);
+                MappedRooms rooms = new MappedRooms(channel.map(FileChannel.MapMode.READ_ONLY, table.getLong(entry + 16), (long) size * SLOT), size, strings);
+                Hotel hotel = new Hotel(strings.get(table.getInt(entry)), strings.get(table.getInt(entry + 4)), table.getInt(entry + 8), rooms,
+                        new RoomIndex(rooms, new RoomColumns(size, rooms::price, rooms::beds, rooms::amenities)));
+                rooms.hotel = hotel;
+                Hotel.addHotel(hotel);
+            }
+        }
+        loadBookings(bookings);
+    }
+
+    /**
+     * This method removes a store that is no longer used. Its rooms must no longer be in use.
+     * A mapped file cannot be removed on Windows until its mappings have been garbage collected, so the removal is retried a few times,
+     * asking for a garbage collection in between.
+     * @param file the file of the store.
+     * @return true if the store was removed, or false if it is still mapped.
+     */
+    protected static boolean delete(Path file)
+    {
+        for(int attempt = 0; attempt < 10; ++attempt)
+        {
+            try
+            {
+                Files.deleteIfExists(file);
+                return true;
+            }
+            catch (IOException exception) // The mappings have not been collected yet
+            {
+                System.gc();
+                try
+                {
+                    Thread.sleep(100);
+                }
+                catch (InterruptedException interrupted)
+                {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * This method saves the bookings of all the hotels in the server. Only the rooms that hold bookings are visited.
+     * Format: int magic, int version, int bookings, then for each booking: int hotel, int room, int start, int duration, long timestamp, string customer.
+     * @param file the file of the bookings.
+     * @throws IOException if the file could not be written.
+     */
+    protected static void saveBookings(Path file) throws IOException
+    {
+        List<Room> rooms = new ArrayList<>(); // The room of each booking
+        List<BookingDetails> bookings = new ArrayList<>();
+        for(Hotel hotel : Hotel.getHotels())
+            for(Room room : hotel.customers.rooms())
+                for(BookingDetails details : room.getBookings())
+                {
+                    rooms.add(room);
+                    bookings.add(details);
+                }
+
+        try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)))
+        {
+            output.writeInt(BOOKINGS_MAGIC);
+            output.writeInt(BOOKINGS_VERSION);
+            output.writeInt(bookings.size());
+            for(int i = 0; i < bookings.size(); ++i)
+            {
+                BookingDetails details = bookings.get(i);
+                output.writeInt(rooms.get(i).hotel.id);
+                output.writeInt(rooms.get(i).number);
+                output.writeInt(details.startDate);
+                output.writeInt(details.DurationInDays);
+                output.writeLong(details.timeStamp);
+                output.writeUTF(details.customerName);
+            }
+        }
+    }
+
+    /**
+     * This method adds the saved bookings to the rooms of the hotels.
+     * @param file the file of the bookings.
+     * @throws IOException if the file could not be read.
+     */
+    private static void loadBookings(Path file) throws IOException
+    {
+        if(!Files.exists(file)) // If nothing has been booked yet
+            return;
+        try(DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16)))
+        {
+            if(input.readInt() != BOOKINGS_MAGIC)
+                throw new IOException(file + " is not a bookings file");
+            int version = input.readInt();
+            if(version > BOOKINGS_VERSION)
+                throw new IOException(file + " was written in a newer format, which this server does not support");
+            for(int records = input.readInt(); records > 0; --records)
+            {
+                Room room = Hotel.getHotel(input.readInt()).getRooms().get(input.readInt());
+                int start = input.readInt(), duration = input.readInt();
+                long timeStamp = input.readLong();
+                room.setDetails(new BookingDetails(version >= 2 ? input.readUTF() : BookingDetails.anonymous, start, duration, timeStamp));
+            }
+        }
+    }
+}
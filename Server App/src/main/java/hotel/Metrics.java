@@ -0,0 +1,207 @@
+package hotel;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ObjectName;
+
+/**
+ * This class holds the metrics of the server: how long the pages, queries, bookings and saves take, how long bookings wait for the lock of a room,
+ * how many sessions are open, how many bytes are written to the disk and how often listings are sent from a cache.
+ * The metrics are published as the MXBean hotel:type=Metrics and as plain text on http://127.0.0.1:{hotel.metricsPort}/, one "name value" line each.
+ * Latencies are reported in nanoseconds. With hotel.metrics=false the hot paths are not timed and nothing is published.
+ */
+public class Metrics implements MetricsMXBean
+{
+    private static final Map<String, LatencyHistogram> latencies = new LinkedHashMap<>(); // Every histogram, by name, in the order they are reported
+    private static final Map<String, LongAdder> counters = new LinkedHashMap<>(); // Every counter, by name, in the order they are reported
+
+    // The time taken to answer a line of a client, by the page it leads to, see Connection
+    protected static final LatencyHistogram[] pages = {
+            histogram("page.welcome"), histogram("page.book"), histogram("page.booked"), histogram("page.empty"),
+            histogram("page.rooms"), histogram("page.cancel"), histogram("page.search")
+    };
+    protected static final LatencyHistogram otherPage = histogram("page.other"); // A page that does not exist
+
+    // The time taken by the queries and changes of a hotel
+    protected static final LatencyHistogram emptyRooms = histogram("hotel.getEmptyRooms");
+    protected static final LatencyHistogram bookedRooms = histogram("hotel.getBookedRooms");
+    protected static final LatencyHistogram roomsBooked = histogram("hotel.getRoomsBooked");
+    protected static final LatencyHistogram searchByPrice = histogram("hotel.searchByPrice");
+    protected static final LatencyHistogram searchByBeds = histogram("hotel.searchByBeds");
+    protected static final LatencyHistogram searchByAmenities = histogram("hotel.searchByAmenities");
+    protected static final LatencyHistogram search = histogram("hotel.search");
+    protected static final LatencyHistogram searchAll = histogram("hotel.searchAll"); // Searching every hotel, see HotelSearch
+    protected static final LatencyHistogram book = histogram("hotel.book"); // Including the wait for the journal
+    protected static final LatencyHistogram deleteBooking = histogram("hotel.deleteBooking"); // Including the wait for the journal
+    protected static final LatencyHistogram lockWait = histogram("hotel.lockWait"); // The time a booking or cancellation waits for the lock of its room
+    protected static final LatencyHistogram command = histogram("protocol.command"); // The time taken to execute a request of the command protocol
+
+    // The time taken to save and load the hotels
+    protected static final LatencyHistogram saveRooms = histogram("persistence.saveRooms");
+    protected static final LatencyHistogram loadRooms = histogram("persistence.loadRooms");
+    protected static final LatencyHistogram journalFlush = histogram("persistence.journalFlush"); // Writing and forcing a batch of journal records
+    protected static final LatencyHistogram replicationLag = histogram("replication.applyLag"); // From the primary saving a record to a replica applying it
+
+    protected static final LongAdder sessionsOpened = counter("sessions.opened");
+    protected static final LongAdder bookingsRefused = counter("hotel.book.refused"); // Bookings refused because the room was taken
+    protected static final LongAdder journalBytes = counter("persistence.journalBytes");
+    protected static final LongAdder dataFileBytes = counter("persistence.dataFileBytes");
+    protected static final LongAdder recordsShipped = counter("replication.recordsShipped"); // Records shipped by a primary, counted once whatever the number of replicas
+    protected static final LongAdder recordsApplied = counter("replication.recordsApplied"); // Records applied by a replica
+    protected static final LongAdder promotions = counter("replication.promotions"); // Replicas promoted to primary, see Replication
+    protected static final AtomicInteger activeSessions = new AtomicInteger(); // The number of sessions currently open
+
+    /**
+     * This method creates and registers a histogram.
+     * @param name the name of the histogram.
+     * @return the histogram.
+     */
+    private static LatencyHistogram histogram(String name)
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Metrics.latencies.put(name, histogram);
+        return histogram;
+    }
+
+    /**
+     * This method creates and registers a counter.
+     * @param name the name of the counter.
+     * @return the counter.
+     */
+    private static LongAdder counter(String name)
+    {
+        LongAdder counter = new LongAdder();
+        Metrics.counters.put(name, counter);
+        return counter;
+    }
+
+    /**
+     * This method returns the time at which an operation starts, to be passed to {@link LatencyHistogram#record(long)} once it is over.
+     * @return the current time in nanoseconds, or 0 if metrics are disabled.
+     */
+    protected static long start()
+    {
+        return Config.metrics ? System.nanoTime() : 0;
+    }
+
+    /**
+     * This method publishes the metrics as an MXBean and on the local endpoint, unless metrics are disabled.
+     */
+    protected static void open()
+    {
+        if(!Config.metrics)
+            return;
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Metrics(), new ObjectName("hotel:type=Metrics"));
+        }
+        catch (Exception exception)
+        {
+            exception.printStackTrace(); // The server runs on without the MXBean
+        }
+
+        if(Config.metricsPort <= 0)
+            return;
+        try
+        {
+            HttpServer endpoint = HttpServer.create(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), Config.metricsPort), 0);
+            endpoint.createContext("/", exchange -> {
+                byte[] report = Metrics.report().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+                exchange.sendResponseHeaders(200, report.length);
+                try(OutputStream body = exchange.getResponseBody())
+                {
+                    body.write(report);
+                }
+            });
+            endpoint.start();
+            System.out.println("Metrics Are Available At http://127.0.0.1:" + Config.metricsPort + "/");
+        }
+        catch (IOException exception)
+        {
+            exception.printStackTrace(); // The server runs on without the endpoint
+        }
+    }
+
+    /**
+     * This method reads the current value of every metric.
+     * Each histogram is reported as its count, mean, 50th, 90th, 99th and 99.9th percentiles and maximum.
+     * @return the value of each metric, by name.
+     */
+    protected static Map<String, Long> values()
+    {
+        Map<String, Long> values = new LinkedHashMap<>();
+        values.put("sessions.active", (long)Metrics.activeSessions.get());
+        if(Config.mode.equalsIgnoreCase("pool"))
+        {
+            values.put("sessions.queued", (long)SessionPool.getQueued());
+            values.put("sessions.rejected", SessionPool.getRejected());
+        }
+        for(Map.Entry<String, LongAdder> counter : Metrics.counters.entrySet())
+            values.put(counter.getKey(), counter.getValue().sum());
+        values.put("replication.primary", Replication.isPrimary() ? 1L : 0L);
+        values.put("replication.replicas", (long)Replication.getReplicas());
+        values.put("replication.sequence", Replication.getSequence());
+        if(!Replication.isPrimary())
+        {
+            values.put("replication.lagRecords", Replication.getLagRecords());
+            values.put("replication.silenceMs", Replication.getSilence());
+        }
+        values.put("cache.hits", ResponseCache.getHits());
+        values.put("cache.misses", ResponseCache.getMisses());
+        values.put("cache.hitRatePercent", Math.round(ResponseCache.getHitRate() * 100));
+        for(Map.Entry<String, LatencyHistogram> latency : Metrics.latencies.entrySet())
+        {
+            String name = latency.getKey();
+            LatencyHistogram histogram = latency.getValue();
+            values.put(name + ".count", histogram.getCount());
+            values.put(name + ".meanNs", histogram.getMean());
+            values.put(name + ".p50Ns", histogram.getPercentile(50));
+            values.put(name + ".p90Ns", histogram.getPercentile(90));
+            values.put(name + ".p99Ns", histogram.getPercentile(99));
+            values.put(name + ".p999Ns", histogram.getPercentile(99.9));
+            values.put(name + ".maxNs", histogram.getMax());
+        }
+        return values;
+    }
+
+    /**
+     * This method writes the current value of every metric as plain text, one "name value" line each.
+     * @return the report.
+     */
+    protected static String report()
+    {
+        StringBuilder report = new StringBuilder();
+        for(Map.Entry<String, Long> value : Metrics.values().entrySet())
+            report.append(value.getKey()).append(' ').append(value.getValue()).append('\n');
+        return report.toString();
+    }
+
+    @Override
+    public Map<String, Long> getValues()
+    {
+        return Metrics.values();
+    }
+
+    @Override
+    public String getReport()
+    {
+        return Metrics.report();
+    }
+
+    @Override
+    public int getActiveSessions()
+    {
+        return Metrics.activeSessions.get();
+    }
+}
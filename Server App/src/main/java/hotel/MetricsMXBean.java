@@ -0,0 +1,27 @@
+package hotel;
+
+import java.util.Map;
+
+/**
+ * This interface describes the metrics of the server as they are published over JMX, see {@link Metrics}.
+ */
+public interface MetricsMXBean
+{
+    /**
+     * This method returns the current value of every metric.
+     * @return the value of each metric, by name.
+     */
+    Map<String, Long> getValues();
+
+    /**
+     * This method returns the current value of every metric as plain text, one "name value" line each.
+     * @return the report.
+     */
+    String getReport();
+
+    /**
+     * This method returns the number of sessions currently open.
+     * @return the number of active sessions.
+     */
+    int getActiveSessions();
+}
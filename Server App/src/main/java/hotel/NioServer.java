@@ -0,0 +1,378 @@
+package hotel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class is used to represent the non-blocking mode of the server.
+ * A single selector thread accepts the clients and reads and writes their sockets. Whenever a client sends a full line,
+ * the line is handed to its {@link Connection} on a small pool of worker threads, so an idle client does not hold a thread at all.
+ * The selector thread itself never renders a page: the landing page is also rendered on a worker. While a client has lines waiting to be handled,
+ * its socket is not read, so a client that sends faster than its lines are handled is held back by TCP instead of filling the memory of the server.
+ * Likewise, while a client has more output waiting to be written than it reads, its lines are not handled, so no more pages are rendered for it.
+ */
+public class NioServer
+{
+    private static Selector selector;
+    private static final Queue<Client> changes = new ConcurrentLinkedQueue<>(); // The clients that have new output waiting to be written
+    private static ExecutorService workers; // The threads on which the connections handle their input
+    private static final int maxLineLength = 8192; // The number of bytes of a line after which the client is disconnected
+    private static final int maxPendingOutput = 1 << 20; // The number of bytes waiting to be written to a client above which its lines are not handled
+
+    /**
+     * This class is used to represent a single client of the selector.
+     * It keeps the bytes of a line that has not fully arrived, the output waiting to be written and the lines waiting to be handled.
+     */
+    private static class Client extends OutputStream implements Closeable, Runnable
+    {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final Connection connection;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream(); // The bytes of the line being received
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream(); // The output of the connection that has not been flushed yet
+        private final Queue<ByteBuffer> pending = new ConcurrentLinkedQueue<>(); // The flushed output waiting to be written to the socket
+        private final Queue<String> lines = new ConcurrentLinkedQueue<>(); // The lines waiting to be handled by the connection
+        private boolean running = false; // Whether a worker is handling the lines of this client
+        private boolean started = false; // Whether the landing page has been shown to this client
+        private volatile boolean resume = false; // Whether the socket should be read again, now that the lines have been handled
+        private volatile boolean ended = false; // Whether the client has disconnected
+        private volatile boolean closing = false; // Whether the socket should be closed once the pending output has been written
+        private volatile long pendingBytes = 0; // The number of bytes in pending, only changed while this client is locked
+
+        private Client(SocketChannel channel) throws Exception
+        {
+            this.channel = channel;
+            this.key = channel.register(NioServer.selector, SelectionKey.OP_READ, this);
+            this.connection = new Connection(channel.getRemoteAddress().toString(), this, this);
+        }
+
+        /**
+         * This method splits the bytes received from the socket into lines and schedules them to be handled.
+         * Once there are lines waiting, the socket is not read until they have been handled.
+         * @param buffer the bytes received.
+         * @return false if the line being received is too long, true otherwise.
+         */
+        private boolean receive(ByteBuffer buffer)
+        {
+            while(buffer.hasRemaining())
+            {
+                byte b = buffer.get();
+                if(b == '\n')
+                {
+                    String text = this.line.toString(StandardCharsets.UTF_8);
+                    this.line.reset();
+                    this.lines.add(text.endsWith("\r") ? text.substring(0, text.length() - 1) : text);
+                }
+                else if(this.line.size() >= NioServer.maxLineLength)
+                    return false;
+                else
+                    this.line.write(b);
+            }
+            if(!this.lines.isEmpty()) // Stop reading until the worker has handled the lines
+                this.key.interestOps(this.key.interestOps() & ~SelectionKey.OP_READ);
+            schedule();
+            return true;
+        }
+
+        /**
+         * This method makes sure that a worker is handling the lines of this client.
+         * Only one worker handles a client at a time, so the lines are handled in the order they arrived.
+         */
+        private synchronized void schedule()
+        {
+            if(!this.running && (!this.started || (!this.lines.isEmpty() && !backlogged()) || (this.ended && this.connection.isOpen())))
+            {
+                this.running = true;
+                NioServer.workers.execute(this);
+            }
+        }
+
+        /**
+         * This method shows the landing page to this client, the first time, and handles the lines of this client on a worker thread.
+         */
+        @Override
+        public void run()
+        {
+            if(!this.started)
+            {
+                this.started = true;
+                this.connection.start();
+            }
+            String text;
+            while(!backlogged() && (text = this.lines.poll()) != null && this.connection.isOpen()) // Stop once the client has too much output to read
+                this.connection.input(text);
+            if(this.ended && this.connection.isOpen()) // Let the connection know that the client has disconnected
+                this.connection.input(null);
+            synchronized(this)
+            {
+                this.running = false;
+            }
+            if(!this.ended && this.connection.isOpen()) // Ask the selector thread to read the socket again
+            {
+                this.resume = true;
+                NioServer.changes.add(this);
+                NioServer.selector.wakeup();
+            }
+            schedule(); // Handle the lines that arrived in the meantime
+        }
+
+        /**
+         * This method checks if this client has more output waiting to be written than is allowed.
+         * @return true if no more lines of this client are handled until its output has been written.
+         */
+        private boolean backlogged()
+        {
+            return this.pendingBytes > NioServer.maxPendingOutput && !this.ended;
+        }
+
+        /**
+         * This method is called by the selector thread once some of the pending output has been written to the socket.
+         * @param bytes the number of bytes written.
+         */
+        private void written(long bytes)
+        {
+            boolean drained;
+            synchronized(this) // Output is only added while this client is locked, so nothing is added between the two checks
+            {
+                boolean backlogged = this.pendingBytes > NioServer.maxPendingOutput;
+                this.pendingBytes -= bytes;
+                drained = backlogged && this.pendingBytes <= NioServer.maxPendingOutput;
+            }
+            if(drained) // The lines that were held back can be handled again
+                schedule();
+        }
+
+        @Override
+        public synchronized void write(int b)
+        {
+            this.output.write(b);
+        }
+
+        @Override
+        public synchronized void write(byte[] bytes, int offset, int length)
+        {
+            this.output.write(bytes, offset, length);
+        }
+
+        /**
+         * This method hands the output of the connection to the selector thread, which writes it to the socket.
+         */
+        @Override
+        public void flush()
+        {
+            synchronized(this)
+            {
+                if(this.output.size() == 0)
+                    return;
+                this.pending.add(ByteBuffer.wrap(this.output.toByteArray()));
+                this.pendingBytes += this.output.size();
+                this.output.reset();
+            }
+            NioServer.changes.add(this);
+            NioServer.selector.wakeup();
+        }
+
+        /**
+         * This method asks the selector thread to close the socket once all the pending output has been written.
+         */
+        @Override
+        public void close()
+        {
+            this.closing = true;
+            NioServer.changes.add(this);
+            NioServer.selector.wakeup();
+        }
+    }
+
+    /**
+     * This method starts the non-blocking server and runs the selector loop on the calling thread.
+     * @param address the address to listen on.
+     * @param port the port to listen on.
+     */
+    protected static void start(String address, int port)
+    {
+        ServerSocketChannel server = null;
+        try
+        {
+            NioServer.selector = Selector.open();
+            NioServer.workers = Executors.newFixedThreadPool(Config.workers);
+            server = ServerSocketChannel.open();
+            server.bind(new InetSocketAddress(address, port), Config.backlog); // Listen on the specified address and port number
+            server.configureBlocking(false);
+            server.register(NioServer.selector, SelectionKey.OP_ACCEPT);
+            System.out.println("Server has started!");
+        }
+        catch (Exception ex)
+        {
+            ex.printStackTrace();
+            System.exit(1); // Close the server and exit the program if the serverSocket was not created
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(8192); // The buffer into which the sockets are read
+        while(true) // While the server is up and running
+        {
+            try
+            {
+                NioServer.selector.select();
+                Client changed;
+                while((changed = NioServer.changes.poll()) != null) // Start writing the output that has been flushed since the last select
+                {
+                    resume(changed);
+                    write(changed);
+                }
+
+                for(SelectionKey key : NioServer.selector.selectedKeys())
+                {
+                    if(!key.isValid())
+                        continue;
+                    if(key.isAcceptable())
+                        accept(server);
+                    else
+                    {
+                        Client client = (Client) key.attachment();
+                        if(key.isReadable())
+                            read(client, buffer);
+                        if(key.isValid() && key.isWritable())
+                            write(client);
+                    }
+                }
+                NioServer.selector.selectedKeys().clear();
+            }
+            catch (IOException e)
+            {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * This method accepts the new clients and has a worker display the landing page to them.
+     * @param server the socket on which the clients connect.
+     */
+    private static void accept(ServerSocketChannel server)
+    {
+        try
+        {
+            SocketChannel channel;
+            while((channel = server.accept()) != null) // Accept every client that is waiting
+            {
+                channel.configureBlocking(false);
+                new Client(channel).schedule();
+            }
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * This method reads the bytes a client has sent.
+     * @param client the client that sent the bytes.
+     * @param buffer the buffer into which the bytes are read.
+     */
+    private static void read(Client client, ByteBuffer buffer)
+    {
+        int read;
+        try
+        {
+            buffer.clear();
+            read = client.channel.read(buffer);
+        }
+        catch (IOException e)
+        {
+            read = -1;
+        }
+
+        if(read < 0) // If the client has disconnected
+        {
+            client.key.interestOps(0);
+            client.ended = true;
+            client.schedule();
+            return;
+        }
+        buffer.flip();
+        if(!client.receive(buffer)) // If the client sends a line that is too long, disconnect it
+        {
+            client.key.interestOps(0);
+            client.ended = true;
+            client.schedule();
+        }
+    }
+
+    /**
+     * This method reads the socket of a client again once the worker has handled the lines of the client.
+     * @param client the client whose lines have been handled.
+     */
+    private static void resume(Client client)
+    {
+        if(!client.resume)
+            return;
+        client.resume = false;
+        if(client.key.isValid() && !client.ended && client.lines.isEmpty())
+            client.key.interestOps(client.key.interestOps() | SelectionKey.OP_READ);
+    }
+
+    /**
+     * This method writes as much of the pending output of a client as the socket accepts.
+     * Whatever does not fit is written once the socket becomes writable again.
+     * @param client the client whose output is being written.
+     */
+    private static void write(Client client)
+    {
+        if(!client.key.isValid())
+            return;
+        long written = 0;
+        try
+        {
+            ByteBuffer next;
+            while((next = client.pending.peek()) != null)
+            {
+                written += client.channel.write(next);
+                if(next.hasRemaining()) // If the socket is full, wait until it becomes writable
+                {
+                    client.key.interestOps(client.key.interestOps() | SelectionKey.OP_WRITE);
+                    client.written(written);
+                    return;
+                }
+                client.pending.poll();
+            }
+            client.written(written);
+
+            if(client.closing)
+            {
+                client.key.cancel();
+                client.channel.close();
+            }
+            else
+                client.key.interestOps(client.key.interestOps() & ~SelectionKey.OP_WRITE);
+        }
+        catch (IOException e) // The client has gone, e.g. its connection was reset
+        {
+            client.ended = true;
+            client.schedule(); // Let the connection know, so that its session is closed
+            client.key.cancel();
+            try
+            {
+                client.channel.close();
+            }
+            catch (IOException ignored)
+            {
+
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package hotel;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * This class is used to represent the occupancy of a hotel.
+ * For every night on which at least one room is booked, it keeps a bitmap with one bit for each room of the hotel, set if the room is booked that night.
+ * Finding the rooms that are free for a range of nights then only takes one OR of the bitmaps of those nights, instead of checking every room.
+ * A bitmap is dropped once no room is booked on its night any more, and once its night has passed, so only the nights ahead are kept.
+ */
+public class Occupancy
+{
+    private final Map<Integer, Night> nights = new ConcurrentHashMap<>(); // The bitmap of each night, by day
+    private final ReadWriteLock resize = new ReentrantReadWriteLock(); // Changing bits shares this lock, growing the bitmaps takes it exclusively
+    private volatile int words = 1; // The number of longs in each bitmap
+    private volatile int today = Integer.MIN_VALUE; // The day before which every bitmap has been dropped
+
+    /**
+     * This class is used to represent the bitmap of a night and the number of rooms booked on that night.
+     * Both are only changed while the map holds the lock of the night, in compute, so that a bitmap is never dropped while a room is being marked in it.
+     */
+    private static class Night
+    {
+        private volatile AtomicLongArray bitmap;
+        private int booked; // The number of bits set in the bitmap
+
+        private Night(int words)
+        {
+            this.bitmap = new AtomicLongArray(words);
+        }
+    }
+
+    /**
+     * This method makes sure the bitmaps have a bit for every room of the hotel.
+     * @param rooms the number of rooms in the hotel.
+     */
+    protected void ensureCapacity(int rooms)
+    {
+        int needed = Math.max(1, (rooms + 63) / 64);
+        if(needed <= this.words)
+            return;
+        needed = Math.max(needed, this.words * 2); // Grow at least twofold, so that adding rooms one by one does not copy the bitmaps every time
+
+        this.resize.writeLock().lock();
+        try
+        {
+            for(Night night : this.nights.values()) // Copy each bitmap into a larger one
+            {
+                AtomicLongArray larger = new AtomicLongArray(needed);
+                for(int i = 0; i < night.bitmap.length(); ++i)
+                    larger.set(i, night.bitmap.get(i));
+                night.bitmap = larger;
+            }
+            this.words = needed;
+        }
+        finally
+        {
+            this.resize.writeLock().unlock();
+        }
+    }
+
+    /**
+     * This method marks a room as booked for a range of nights.
+     * @param room the number of the room.
+     * @param from the first night.
+     * @param to the day after the last night.
+     */
+    protected void book(int room, int from, int to)
+    {
+        long bit = 1L << (room & 63);
+        from = Math.max(from, forgetPast()); // The nights that have passed are not kept
+        this.resize.readLock().lock();
+        try
+        {
+            for(int night = from; night < to; ++night)
+                this.nights.compute(night, (day, bitmap) -> {
+                    if(bitmap == null)
+                        bitmap = new Night(this.words);
+                    if((bitmap.bitmap.getAndUpdate(room >>> 6, word -> word | bit) & bit) == 0)
+                        ++bitmap.booked;
+                    return bitmap;
+                });
+        }
+        finally
+        {
+            this.resize.readLock().unlock();
+        }
+    }
+
+    /**
+     * This method marks a room as free for a range of nights.
+     * @param room the number of the room.
+     * @param from the first night.
+     * @param to the day after the last night.
+     */
+    protected void free(int room, int from, int to)
+    {
+        long bit = 1L << (room & 63);
+        this.resize.readLock().lock();
+        try
+        {
+            for(int night = from; night < to; ++night)
+                this.nights.computeIfPresent(night, (day, bitmap) -> {
+                    if((bitmap.bitmap.getAndUpdate(room >>> 6, word -> word & ~bit) & bit) != 0)
+                        --bitmap.booked;
+                    return bitmap.booked > 0 ? bitmap : null; // Drop the bitmap once no room is booked that night
+                });
+        }
+        finally
+        {
+            this.resize.readLock().unlock();
+        }
+    }
+
+    /**
+     * This method returns the rooms that are booked for at least one night in a range.
+     * @param from the first night.
+     * @param to the day after the last night.
+     * @return a bitmap with a bit set for each room that is booked on any of these nights.
+     * @throws IllegalArgumentException if the range is longer than hotel.maxStay nights.
+     */
+    protected long[] occupied(int from, int to)
+    {
+        if((long) to - from > Config.maxStay) // Every night of the range is read
+            throw new IllegalArgumentException("The duration may be at most " + Config.maxStay + " days");
+        forgetPast();
+        long[] occupied = new long[this.words];
+        for(int night = from; night < to; ++night)
+        {
+            Night booked = this.nights.get(night);
+            if(booked == null) // If no room is booked on this night
+                continue;
+            AtomicLongArray bitmap = booked.bitmap;
+            for(int i = 0; i < occupied.length && i < bitmap.length(); ++i)
+                occupied[i] |= bitmap.get(i);
+        }
+        return occupied;
+    }
+
+    /**
+     * This method drops the bitmaps of the nights that have passed, the first time it is called on each day.
+     * @return today.
+     */
+    private int forgetPast()
+    {
+        int today = BookingDetails.today();
+        if(today > this.today)
+        {
+            this.nights.keySet().removeIf(night -> night < today);
+            this.today = today;
+        }
+        return today;
+    }
+
+    /**
+     * This method returns an estimate of the memory used by the bitmaps.
+     * @return the number of bytes used.
+     */
+    public long memoryUsage()
+    {
+        long perNight = 16 + 8L * this.words // The array of the bitmap
+                + 16 // The AtomicLongArray that wraps it
+                + 24 // The night that holds it
+                + 16 + 32; // The Integer key and the entry of the map
+        return this.nights.size() * perNight;
+    }
+
+    /**
+     * This method returns the number of nights ahead on which at least one room is booked.
+     * @return the number of bitmaps.
+     */
+    public int getNights()
+    {
+        return this.nights.size();
+    }
+}
@@ -0,0 +1,397 @@
+package hotel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is used to copy the hotels of a primary server to read-only replicas, so that listings and searches can be spread over several processes.
+ * The primary takes every booking and cancellation. Once the journal has saved a batch of records, the primary ships them, numbered in the order
+ * of the journal, to every replica connected to hotel.replicationPort, and sends a heartbeat to a replica with nothing else to send.
+ * A replica, started with hotel.role=replica, connects to the first primary of hotel.primary that answers, loads a snapshot of its hotels
+ * and then applies each record it receives, just as the journal is replayed; it serves the menus and the command protocol, but refuses to book or cancel.
+ * A replica that has not heard from its primary for hotel.failoverTimeout milliseconds has lost it: with hotel.failover it promotes itself to primary,
+ * saving the hotels to its own data directory and taking bookings from then on; otherwise it tries the primaries of hotel.primary again in turn.
+ * For example, a primary, a replica that takes over and a replica that follows whichever of the two is the primary, on one machine:
+ *   java Main
+ *   java -Dhotel.role=replica -Dhotel.failover=true -Dhotel.port=2837 -Dhotel.commandPort=2839 -Dhotel.replicationPort=2840 -Dhotel.metricsPort=2838 Main
+ *   java -Dhotel.role=replica -Dhotel.primary=127.0.0.1:2810,127.0.0.1:2840 -Dhotel.port=2847 -Dhotel.commandPort=2849 -Dhotel.replicationPort=0 -Dhotel.metricsPort=2848 Main
+ * Wire format, one line each after the snapshot: "SNAPSHOT {sequence}" followed by the snapshot, see {@link Snapshot}, covering every record up to that sequence;
+ * then "R {sequence} {time saved} {record}" for each record of the journal and "H {sequence} {time sent}" for each heartbeat, times in milliseconds.
+ * Both the snapshot and the records hold the name of the customer of each booking, so a replica lists the same bookings as its primary
+ * and, once promoted, lets each customer cancel the bookings made on the old primary.
+ */
+public class Replication
+{
+    private static volatile boolean primary = !Config.role.equals("replica"); // Whether this server takes bookings
+    private static final AtomicLong sequence = new AtomicLong(); // The number of the last record shipped, on a primary
+    private static final List<Follower> followers = new CopyOnWriteArrayList<>(); // The replicas connected to this primary
+
+    // The state of a replica
+    private static volatile long applied; // The number of the last record applied
+    private static volatile long shipped; // The number of the last record the primary is known to have shipped
+    private static volatile long lastHeard; // The time at which the primary was last heard from, in milliseconds
+    private static Socket link; // The connection to the primary
+
+    /**
+     * This class is used to represent a replica connected to this primary, with the records that are waiting to be sent to it.
+     */
+    private static class Follower
+    {
+        private final Socket socket;
+        private final BlockingQueue<String> queue = new LinkedBlockingQueue<>(Config.replicationBacklog);
+
+        private Follower(Socket socket)
+        {
+            this.socket = socket;
+        }
+
+        /**
+         * This method disconnects a replica that has fallen too far behind. It connects again and starts over from a new snapshot.
+         */
+        private void drop()
+        {
+            Replication.followers.remove(this);
+            try
+            {
+                this.socket.close();
+            }
+            catch (IOException ignored)
+            {
+            }
+        }
+    }
+
+    /**
+     * This method checks whether this server takes bookings and cancellations.
+     * @return true if this server is a primary, or a replica that has been promoted.
+     */
+    protected static boolean isPrimary()
+    {
+        return Replication.primary;
+    }
+
+    /**
+     * This method refuses a change on a replica.
+     * @throws Exception if this server is a replica.
+     */
+    protected static void checkWritable() throws Exception
+    {
+        if(!Replication.primary)
+            throw new Exception("This server is a read-only replica, bookings and cancellations are taken by its primary");
+    }
+
+    /**
+     * This method ships records that have just been saved to every replica. It is only called by the writer thread of the journal.
+     * @param records the records, in the order of the journal.
+     */
+    protected static void ship(List<String> records)
+    {
+        if(Replication.followers.isEmpty())
+        {
+            Replication.sequence.addAndGet(records.size());
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for(String record : records)
+        {
+            String line = "R " + Replication.sequence.incrementAndGet() + " " + now + " " + record;
+            for(Follower follower : Replication.followers)
+                if(!follower.queue.offer(line)) // If the replica has fallen too far behind
+                    follower.drop();
+        }
+        Metrics.recordsShipped.add(records.size());
+    }
+
+    /**
+     * This method starts accepting replicas on a thread of its own, unless replication is disabled.
+     */
+    protected static void serve()
+    {
+        if(Config.replicationPort <= 0)
+            return;
+        ServerSocket serverSocket;
+        try
+        {
+            serverSocket = new ServerSocket(Config.replicationPort, Config.backlog, InetAddress.getByName("127.0.0.1"));
+        }
+        catch (IOException exception)
+        {
+            exception.printStackTrace(); // The server runs on without replicas
+            return;
+        }
+
+        Thread thread = new Thread(() -> {
+            while(true)
+            {
+                try
+                {
+                    Socket replica = serverSocket.accept();
+                    Thread feeder = new Thread(() -> Replication.feed(replica), "Replica " + replica.getRemoteSocketAddress());
+                    feeder.setDaemon(true);
+                    feeder.start();
+                }
+                catch (IOException exception)
+                {
+                    exception.printStackTrace();
+                }
+            }
+        }, "Replication Server");
+        thread.setDaemon(true);
+        thread.start();
+        System.out.println("Replicas Can Follow On Port " + Config.replicationPort);
+    }
+
+    /**
+     * This method sends a snapshot of the hotels to a replica that has just connected, followed by every record saved from then on, until the replica goes.
+     * The replica starts receiving records before the snapshot is taken, so the snapshot may already hold the changes of the first few records,
+     * which is harmless since a record only sets the state of a room.
+     * @param socket the socket of the replica.
+     */
+    private static void feed(Socket socket)
+    {
+        Follower follower = new Follower(socket);
+        Replication.followers.add(follower);
+        System.out.println("Replica " + socket.getRemoteSocketAddress() + " Is Following");
+        try
+        {
+            socket.setTcpNoDelay(true);
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+            output.write(("SNAPSHOT " + Replication.sequence.get() + "\n").getBytes(StandardCharsets.UTF_8));
+            Snapshot.write(output);
+            output.flush();
+            while(Replication.followers.contains(follower))
+            {
+                String line = follower.queue.poll(Config.heartbeat, TimeUnit.MILLISECONDS);
+                if(line == null) // Nothing was saved meanwhile, so let the replica know the primary is still there
+                    line = "H " + Replication.sequence.get() + " " + System.currentTimeMillis();
+                output.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+                if(follower.queue.isEmpty()) // Send the records together, once there are no more to send
+                    output.flush();
+            }
+        }
+        catch (IOException | InterruptedException ignored) // The replica has gone
+        {
+        }
+        finally
+        {
+            follower.drop(); // Also closes the socket
+        }
+        System.out.println("Replica " + socket.getRemoteSocketAddress() + " Has Gone");
+    }
+
+    /**
+     * This method loads the hotels from a primary, then keeps them up to date on a thread of its own. It returns once the hotels have been loaded.
+     */
+    protected static void follow()
+    {
+        DataInputStream input = Replication.connect();
+        Thread thread = new Thread(() -> Replication.replicate(input), "Replication");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * This method connects to the first primary of hotel.primary that answers and replaces the hotels of this server with its snapshot.
+     * It tries the primaries in turn, once a second, until one answers.
+     * @return the stream of the records of the primary, following the snapshot.
+     */
+    private static DataInputStream connect()
+    {
+        while(true)
+        {
+            for(String address : Config.primaryList.split(","))
+            {
+                if(address.isBlank())
+                    continue;
+                String[] parts = address.trim().split(":");
+                Socket socket = new Socket();
+                try
+                {
+                    socket.connect(new InetSocketAddress(parts[0], Integer.parseInt(parts[1])), Config.failoverTimeout);
+                    socket.setSoTimeout(Config.failoverTimeout); // A primary that sends nothing, not even a heartbeat, for that long is lost
+                    DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+                    String header = Replication.readLine(input);
+                    if(header == null || !header.startsWith("SNAPSHOT "))
+                        throw new IOException("Unexpected answer " + header);
+                    long sequence = Long.parseLong(header.substring("SNAPSHOT ".length()).trim());
+                    List<Hotel> hotels = Snapshot.read(input, address);
+                    Hotel.hotels.replace(hotels);
+                    Replication.applied = sequence;
+                    Replication.shipped = sequence;
+                    Replication.lastHeard = System.currentTimeMillis();
+                    Replication.link = socket;
+                    System.out.println("Following The Primary At " + address.trim() + " From Record " + sequence + " With " + hotels.size() + " Hotels");
+                    return input;
+                }
+                catch (IOException | RuntimeException exception)
+                {
+                    Replication.close(socket);
+                }
+            }
+            try
+            {
+                Thread.sleep(1000);
+            }
+            catch (InterruptedException exception)
+            {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * This method applies the records of the primary as they arrive. Once the primary is lost, the replica either promotes itself or connects again.
+     * @param input the stream of the records of the primary.
+     */
+    private static void replicate(DataInputStream input)
+    {
+        while(input != null)
+        {
+            try
+            {
+                String line;
+                while((line = Replication.readLine(input)) != null)
+                {
+                    Replication.lastHeard = System.currentTimeMillis();
+                    String[] parts = line.split(" ", 4);
+                    long sequence = Long.parseLong(parts[1]);
+                    if(parts[0].equals("R")) // A record, which is applied just as the journal is replayed
+                    {
+                        Journal.apply(parts[3]);
+                        Replication.applied = sequence;
+                        Metrics.recordsApplied.increment();
+                        Metrics.replicationLag.recordNanos(TimeUnit.MILLISECONDS.toNanos(Math.max(0, Replication.lastHeard - Long.parseLong(parts[2]))));
+                    }
+                    Replication.shipped = Math.max(Replication.shipped, sequence);
+                }
+            }
+            catch (IOException | RuntimeException ignored) // The primary has gone, has been silent for too long or sent a damaged record
+            {
+            }
+            Replication.close(Replication.link);
+            System.out.println("Lost The Primary At Record " + Replication.applied);
+            if(Config.failover)
+            {
+                Replication.promote();
+                return;
+            }
+            input = Replication.connect();
+        }
+    }
+
+    /**
+     * This method turns this replica into a primary: the hotels are saved to the data directory of this server, the journal is opened
+     * and bookings are taken from then on. Replicas can then follow this server on hotel.replicationPort.
+     */
+    private static void promote()
+    {
+        System.out.println("Promoting This Replica To Primary");
+        File directory = new File(Hotel.savePath);
+        if(!directory.isDirectory())
+            directory.mkdirs();
+        try
+        {
+            Files.deleteIfExists(Paths.get(Journal.journalPath)); // A journal left over from an earlier run does not belong to these hotels
+        }
+        catch (IOException exception)
+        {
+            exception.printStackTrace();
+        }
+        Replication.sequence.set(Replication.applied);
+        Journal.open(); // Save the hotels and start the writer of the journal
+        Replication.primary = true;
+        Metrics.promotions.increment();
+        Replication.serve();
+        System.out.println("This Server Is Now The Primary");
+    }
+
+    /**
+     * This method reads a line of text.
+     * @param input the stream.
+     * @return the line, without its line break, or null if the stream ended.
+     * @throws IOException if the stream could not be read.
+     */
+    private static String readLine(InputStream input) throws IOException
+    {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int next;
+        while((next = input.read()) != '\n')
+        {
+            if(next == -1)
+                return null;
+            line.write(next);
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * This method closes a socket, ignoring any error.
+     * @param socket the socket, or null.
+     */
+    private static void close(Socket socket)
+    {
+        try
+        {
+            if(socket != null)
+                socket.close();
+        }
+        catch (IOException ignored)
+        {
+        }
+    }
+
+    /**
+     * This method returns the number of replicas following this server.
+     * @return the number of replicas.
+     */
+    protected static int getReplicas()
+    {
+        return Replication.followers.size();
+    }
+
+    /**
+     * This method returns the number of the last record of this server: the last record shipped by a primary, or the last record applied by a replica.
+     * @return the number of the record.
+     */
+    protected static long getSequence()
+    {
+        return Replication.primary ? Replication.sequence.get() : Replication.applied;
+    }
+
+    /**
+     * This method returns how far this replica is behind its primary.
+     * @return the number of records the primary has shipped that have not been applied yet.
+     */
+    protected static long getLagRecords()
+    {
+        return Math.max(0, Replication.shipped - Replication.applied);
+    }
+
+    /**
+     * This method returns how long this replica has not heard from its primary.
+     * @return the time since the primary was last heard from, in milliseconds.
+     */
+    protected static long getSilence()
+    {
+        return System.currentTimeMillis() - Replication.lastHeard;
+    }
+}
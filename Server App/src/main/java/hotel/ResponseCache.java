@@ -0,0 +1,106 @@
+package hotel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+
+/**
+ * This class is used to keep the rendered listings of a hotel, as bytes that are ready to be sent to a client.
+ * Every booking or cancellation bumps the version of the hotel, and a listing is only reused while the version it was rendered at is current,
+ * so clients never see a listing that misses a change, while the many clients reading an unchanged hotel share a single rendering.
+ */
+public class ResponseCache
+{
+    private static final AtomicLong hits = new AtomicLong(); // The number of listings sent from a cache, in all the hotels
+    private static final AtomicLong misses = new AtomicLong(); // The number of listings that had to be rendered, in all the hotels
+
+    private final AtomicLong version = new AtomicLong(); // Bumped whenever the rooms or the bookings of the hotel change
+    private final Map<String, Response> responses = new ConcurrentHashMap<>(); // The rendered listings, by what was listed
+
+    /**
+     * This class holds a rendered listing and the version of the hotel it was rendered at.
+     */
+    protected static class Response
+    {
+        private final long version;
+        protected final byte[] bytes; // The listing, which must not be changed
+        protected final int next; // The cursor of the next page of the listing, or -1 if it is the last page, see RoomListing
+
+        private Response(long version, byte[] bytes, int next)
+        {
+            this.version = version;
+            this.bytes = bytes;
+            this.next = next;
+        }
+    }
+
+    /**
+     * This method marks every listing of the hotel as out of date. It is called whenever a room is added, booked or freed.
+     */
+    protected void invalidate()
+    {
+        this.version.incrementAndGet();
+    }
+
+    /**
+     * This method returns a page of a listing, rendering it only if it has not been rendered since the hotel last changed.
+     * The cursor of the next page is kept with the page, so that it is known without rendering the page again.
+     * @param key what is being listed, including every parameter of the listing and the cursor of the page.
+     * @param render writes the page and returns the cursor of the next page.
+     * @return the page.
+     */
+    protected Response get(String key, ToIntFunction<PrintWriter> render)
+    {
+        long version = this.version.get();
+        Response response = this.responses.get(key);
+        if(response != null && response.version == version)
+        {
+            hits.incrementAndGet();
+            return response;
+        }
+        misses.incrementAndGet();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(bytes, StandardCharsets.UTF_8)); // The same encoding and line separator as the writer of a connection
+        int next = render.applyAsInt(writer);
+        writer.flush();
+        Response rendered = new Response(version, bytes.toByteArray(), next);
+        if(this.responses.size() >= Config.cacheSize && !this.responses.containsKey(key)) // Searches can have many keys, so start over once the cache is full
+            this.responses.clear();
+        this.responses.put(key, rendered);
+        return rendered;
+    }
+
+    /**
+     * This method returns the number of listings that were sent from a cache.
+     * @return the number of hits in all the hotels.
+     */
+    public static long getHits()
+    {
+        return hits.get();
+    }
+
+    /**
+     * This method returns the number of listings that had to be rendered.
+     * @return the number of misses in all the hotels.
+     */
+    public static long getMisses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * This method returns the share of listings that were sent from a cache.
+     * @return the hit rate, between 0 and 1.
+     */
+    public static double getHitRate()
+    {
+        long hits = getHits(), total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
@@ -1,66 +1,210 @@
 package hotel;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
 /**
  * This class is used to represent a room in a hotel.
  * It contains the description of the room, its price, the number of beds it contains and its booking details.
+ * A room can hold many bookings, as long as their dates do not overlap. The bookings are kept sorted by their start date,
+ * so checking whether the room is free between two dates takes a single lookup.
+ * Reading the bookings never locks; changing them locks the room.
  */
 public class Room
 {
-	public String description;
+	protected final int descriptionId; // The id of the description of the room in the dictionary of descriptions
 	public int price;
 	public int numberOfBeds;
-	public BookingDetails details;
-	
+	private final NavigableMap<Integer, BookingDetails> bookings = new ConcurrentSkipListMap<>(); // The bookings of the room, by start date
+	protected int number; // The position of the room in its hotel
+	protected Hotel hotel; // The hotel that contains the room, whose occupancy is kept up to date with the bookings of the room
+
 	public Room(String description, int price, int numberOfBeds)
 	{
-		this.description = description;
+		this(Descriptions.id(description), price, numberOfBeds); // Rooms with the same description share it
+	}
+
+	protected Room(int descriptionId, int price, int numberOfBeds)
+	{
+		this.descriptionId = descriptionId;
 		this.price = price;
 		this.numberOfBeds = numberOfBeds;
-		this.details = new BookingDetails();
 	}
 
 	/**
-	 * This method is used to set the booking details of a room.
-	 * @param details the details to be set.
+	 * This method returns the description of the room.
+	 * @return the description of the room.
 	 */
-	public void setDetails(BookingDetails details)
+	public String getDescription()
 	{
-		this.details = details;
+		return Descriptions.get(this.descriptionId);
+	}
+
+	/**
+	 * This method returns the amenities the room includes, according to its description.
+	 * @return the bitmask of the amenities, see {@link Amenity}.
+	 */
+	public int getAmenities()
+	{
+		return Descriptions.amenities(this.descriptionId);
+	}
+
+	/**
+	 * This method is used to add a booking that was loaded from the data file to the room.
+	 * A booking with the same start date is replaced.
+	 * @param details the details to be added.
+	 */
+	public synchronized void setDetails(BookingDetails details)
+	{
+		BookingDetails replaced = this.bookings.put(details.startDate, details);
+		if(replaced != null)
+			occupy(replaced, false);
+		occupy(details, true);
 	}
 
 	/**
 	 * This method is used to book a room.
 	 * @param customerName the name of the customer booking the room.
+	 * @param startDate the first night of the booking.
+	 * @param duration the duration, in days, the customer is booking the room for.
+	 * @return the details of the new booking.
+	 * @throws Exception if the room has already been booked by another customer for any of these nights, or if the stay is not valid.
+	 */
+	public synchronized BookingDetails book(String customerName, int startDate, int duration) throws Exception
+	{
+		BookingDetails.checkStay(startDate, duration);
+		if(!isFree(startDate, startDate + duration))
+			throw new Exception("Room has already been booked by a customer for those dates!");
+		BookingDetails details = new BookingDetails(customerName, startDate, duration, System.currentTimeMillis());
+		this.bookings.put(startDate, details);
+		occupy(details, true);
+		return details;
+	}
+
+	/**
+	 * This method is used to book a room starting today.
+	 * @param customerName the name of the customer booking the room.
 	 * @param duration the duration, in days, the customer is booking the room for.
 	 * @throws Exception if the room has already been booked by another customer.
 	 */
 	public void book(String customerName, int duration) throws Exception
 	{
-		if(!this.details.isBooked()) // If the room has not been booked, create new booking details.
-		{
-			this.details.customerName = customerName;
-			this.details.DurationInDays = duration;
-			this.details.timeStamp = System.currentTimeMillis();
-		}
-		else
-			throw new Exception("Room has already been booked by a customer!");
+		book(customerName, BookingDetails.today(), duration);
 	}
 
 	/**
-	 * This method checks if this room has been booked.
+	 * This method checks if this room is free for all the nights between two dates.
+	 * Since bookings never overlap, only the last booking starting before the end date can be in the way.
+	 * @param from the first night.
+	 * @param to the day after the last night.
+	 * @return true if no booking covers any of these nights.
+	 */
+	public boolean isFree(int from, int to)
+	{
+		Map.Entry<Integer, BookingDetails> before = this.bookings.lowerEntry(to);
+		return before == null || before.getValue().endDate() <= from;
+	}
+
+	/**
+	 * This method checks if this room has been booked for tonight.
 	 * @return the booking status of the room.
 	 */
 	public boolean isBooked()
 	{
-		return this.details.isBooked();
+		int today = BookingDetails.today();
+		return !isFree(today, today + 1);
 	}
 
 	/**
-	 * This method removes the booking of a room.
+	 * This method checks if this room has a booking that has not ended yet.
+	 * @return true if the room is booked tonight or on a later night.
 	 */
-	public void free()
+	public boolean hasBookings()
 	{
-		this.details.clear();
+		Map.Entry<Integer, BookingDetails> last = this.bookings.lastEntry();
+		return last != null && last.getValue().endDate() > BookingDetails.today();
+	}
+
+	/**
+	 * This method returns the bookings of this room, sorted by their start date.
+	 * @return the bookings of the room.
+	 */
+	public Collection<BookingDetails> getBookings()
+	{
+		return this.bookings.values();
+	}
+
+	/**
+	 * This method checks if a customer has booked this room.
+	 * @param customerName the name of the customer.
+	 * @return true if the room has a booking made by the customer.
+	 */
+	public boolean isBookedBy(String customerName)
+	{
+		for(BookingDetails details : this.bookings.values())
+			if(details.customerName.equalsIgnoreCase(customerName))
+				return true;
+		return false;
+	}
+
+	/**
+	 * This method removes the booking of a room that starts on a particular date.
+	 * @param startDate the first night of the booking.
+	 */
+	public synchronized void free(int startDate)
+	{
+		BookingDetails removed = this.bookings.remove(startDate);
+		if(removed != null)
+			occupy(removed, false);
+	}
+
+	/**
+	 * This method removes a particular booking of a room.
+	 * @param booking the details of the booking being removed.
+	 * @return true if the booking was removed, or false if the room no longer holds this booking.
+	 */
+	protected synchronized boolean free(BookingDetails booking)
+	{
+		if(!this.bookings.remove(booking.startDate, booking))
+			return false;
+		occupy(booking, false);
+		return true;
+	}
+
+	/**
+	 * This method marks the nights of a booking in the occupancy of the hotel, adds it to or removes it from the customers of the hotel, and invalidates the listings of the hotel.
+	 * @param booking the booking whose nights are marked.
+	 * @param booked true if the booking was added, or false if it was removed.
+	 */
+	private void occupy(BookingDetails booking, boolean booked)
+	{
+		if(this.hotel == null) // If the room has not been added to a hotel yet, the hotel marks its bookings when it is added
+			return;
+		if(booked)
+		{
+			this.hotel.occupancy.book(this.number, booking.startDate, booking.endDate());
+			this.hotel.customers.add(this, booking);
+		}
+		else
+		{
+			this.hotel.occupancy.free(this.number, booking.startDate, booking.endDate());
+			this.hotel.customers.remove(booking);
+		}
+		this.hotel.responses.invalidate(); // The listings of the hotel show the bookings of the room
+	}
+
+	/**
+	 * This method converts this room into a user-friendly format without its bookings, which name the customers who made them.
+	 * @return the String representation of this room without its bookings.
+	 */
+	public String summary()
+	{
+		return "Room \n{ "
+		+ "\n\tDescription: \"" + getDescription() + "\""
+		+ "\n\tNumber Of Beds: " + this.numberOfBeds
+		+ "\n\tPrice: $" + this.price + "\n}";
 	}
 
 	/**
@@ -69,10 +213,13 @@ public class Room
 	 */
 	public String toString()
 	{
+		StringBuilder details = new StringBuilder();
+		for(BookingDetails booking : this.bookings.values())
+			details.append("\n\t\t").append(booking);
 		return "Room \n{ "
-		+ "\n\tDescription: \"" + this.description + "\""
+		+ "\n\tDescription: \"" + getDescription() + "\""
 		+ "\n\tNumber Of Beds: " + this.numberOfBeds
 		+ "\n\tPrice: $" + this.price
-		+ "\n\tDetails: " + (this.details.isBooked() ? this.details : "Not Booked") + "\n}";
+		+ "\n\tDetails: " + (details.length() > 0 ? details : "Not Booked") + "\n}";
 	}
-}
\ No newline at end of file
+}
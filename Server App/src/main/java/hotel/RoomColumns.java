@@ -0,0 +1,87 @@
+package hotel;
+
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * This class is used to hold the fields of the rooms of a hotel that searches filter on, one array per field, indexed by room number.
+ * The index of the hotel is built from these arrays, and a search reads the price of a room from them once the bitmaps of the index
+ * and of the occupancy have picked the room, so that only the rooms it returns are read.
+ * The booking state of the rooms is already held this way by the occupancy bitmaps of the hotel.
+ * Like the index that holds them, the columns never change once built.
+ */
+public class RoomColumns
+{
+    private final int size;
+    private final int[] prices; // The price of each room
+    private final byte[] beds; // The number of beds of each room
+    private final byte[] amenities; // The bitmask of the amenities of each room
+
+    protected RoomColumns(List<Room> rooms)
+    {
+        this(rooms.size(), number -> rooms.get(number).price, number -> rooms.get(number).numberOfBeds, number -> rooms.get(number).getAmenities());
+    }
+
+    /**
+     * This constructor builds the columns from the fields of each room, so that the rooms themselves do not have to be read.
+     * @param size the number of rooms.
+     * @param price returns the price of a room from its number.
+     * @param beds returns the number of beds of a room from its number.
+     * @param amenities returns the bitmask of the amenities of a room from its number.
+     */
+    protected RoomColumns(int size, IntUnaryOperator price, IntUnaryOperator beds, IntUnaryOperator amenities)
+    {
+        this.size = size;
+        this.prices = new int[size];
+        this.beds = new byte[size];
+        this.amenities = new byte[size];
+        for(int number = 0; number < size; ++number)
+        {
+            int numberOfBeds = beds.applyAsInt(number);
+            if(numberOfBeds < 0 || numberOfBeds > Byte.MAX_VALUE)
+                throw new IllegalArgumentException("Room " + (number + 1) + " has " + numberOfBeds + " beds, but a room can have at most " + Byte.MAX_VALUE);
+            this.prices[number] = price.applyAsInt(number);
+            this.beds[number] = (byte) numberOfBeds;
+            this.amenities[number] = (byte) amenities.applyAsInt(number); // There are fewer than eight amenities
+        }
+    }
+
+    /**
+     * This method returns the number of rooms in the columns.
+     * @return the number of rooms.
+     */
+    protected int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * This method returns the price of a room.
+     * @param number the number of the room.
+     * @return the price of the room.
+     */
+    protected int price(int number)
+    {
+        return this.prices[number];
+    }
+
+    /**
+     * This method returns the number of beds of a room.
+     * @param number the number of the room.
+     * @return the number of beds of the room.
+     */
+    protected int beds(int number)
+    {
+        return this.beds[number];
+    }
+
+    /**
+     * This method returns the amenities of a room.
+     * @param number the number of the room.
+     * @return the bitmask of the amenities of the room.
+     */
+    protected int amenities(int number)
+    {
+        return this.amenities[number];
+    }
+}
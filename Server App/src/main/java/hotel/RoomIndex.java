@@ -0,0 +1,201 @@
+package hotel;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * This class is used to index the rooms of a hotel by price, by number of beds and by amenity.
+ * The rooms are kept sorted by price, so the rooms up to a price are found with a binary search, and each number of beds has its own list
+ * of rooms as well as a bitmap of them, so that it can be combined with the occupancy bitmaps of the hotel.
+ * Each amenity also has a bitmap of the rooms that include it, so the rooms with several amenities are found by combining bitmaps.
+ * The index only holds room numbers, so that it does not keep the rooms of a memory-mapped hotel on the heap; the lists it returns look the rooms up as they are read.
+ * An index never changes once built; the hotel builds a new one whenever rooms are added.
+ */
+public class RoomIndex
+{
+    private final List<Room> rooms; // The rooms of the hotel, by number
+    private final RoomColumns columns; // The price and the number of beds of each room
+    private final int[] byPrice; // The numbers of the rooms sorted by price
+    private final int[] prices; // The price of each room in byPrice
+    private final Map<Integer, int[]> byBeds = new HashMap<>(); // The numbers of the rooms with each number of beds
+    private final Map<Integer, long[]> bedsBitmaps = new HashMap<>(); // A bitmap of the rooms with each number of beds, one bit per room number
+    private final long[][] amenityBitmaps = new long[Amenity.values().length][]; // A bitmap of the rooms that include each amenity
+
+    protected RoomIndex(List<Room> rooms)
+    {
+        this(rooms, new RoomColumns(rooms));
+    }
+
+    /**
+     * This constructor builds the index from the columns of the rooms, so that the rooms themselves do not have to be read.
+     * @param rooms the rooms of the hotel, by number.
+     * @param columns the price and the number of beds of each room.
+     */
+    protected RoomIndex(List<Room> rooms, RoomColumns columns)
+    {
+        int size = columns.size();
+        this.rooms = rooms;
+        this.columns = columns;
+        long[] sorted = new long[size]; // The price and the number of each room in one long, so that rooms with the same price stay in order
+        for(int number = 0; number < size; ++number)
+            sorted[number] = (long) columns.price(number) << 32 | number;
+        Arrays.sort(sorted);
+        this.byPrice = new int[size];
+        this.prices = new int[size];
+        for(int i = 0; i < size; ++i)
+        {
+            this.byPrice[i] = (int) sorted[i];
+            this.prices[i] = (int) (sorted[i] >> 32);
+        }
+
+        int words = (size + 63) / 64;
+        Map<Integer, int[]> counts = new HashMap<>(); // The number of rooms with each number of beds, counted first so that each array is allocated once
+        for(int number = 0; number < size; ++number)
+            ++counts.computeIfAbsent(columns.beds(number), key -> new int[1])[0];
+        Map<Integer, int[]> filled = new HashMap<>();
+        for(int number = 0; number < size; ++number)
+        {
+            int numberOfBeds = columns.beds(number);
+            int position = filled.computeIfAbsent(numberOfBeds, key -> new int[1])[0]++;
+            this.byBeds.computeIfAbsent(numberOfBeds, key -> new int[counts.get(key)[0]])[position] = number;
+            this.bedsBitmaps.computeIfAbsent(numberOfBeds, key -> new long[words])[number >>> 6] |= 1L << (number & 63);
+        }
+
+        for(Amenity amenity : Amenity.values())
+            this.amenityBitmaps[amenity.ordinal()] = new long[words];
+        for(int number = 0; number < size; ++number)
+            for(int amenities = columns.amenities(number); amenities != 0; amenities &= amenities - 1)
+                this.amenityBitmaps[Integer.numberOfTrailingZeros(amenities)][number >>> 6] |= 1L << (number & 63);
+    }
+
+    /**
+     * This class is used to present a range of room numbers as a read-only list of rooms.
+     */
+    private class Rooms extends AbstractList<Room> implements RandomAccess
+    {
+        private final int[] numbers;
+        private final int size;
+
+        private Rooms(int[] numbers, int size)
+        {
+            this.numbers = numbers;
+            this.size = size;
+        }
+
+        @Override
+        public Room get(int index)
+        {
+            if(index < 0 || index >= this.size)
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+            return RoomIndex.this.rooms.get(this.numbers[index]);
+        }
+
+        @Override
+        public int size()
+        {
+            return this.size;
+        }
+    }
+
+    /**
+     * This method returns the columns the index was built from.
+     * @return the price and the number of beds of each room.
+     */
+    protected RoomColumns columns()
+    {
+        return this.columns;
+    }
+
+    /**
+     * This method returns the number of rooms whose prices are lower than or equal to the price provided.
+     * @param price the highest price.
+     * @return the number of rooms up to that price.
+     */
+    protected int countCheaperThan(int price)
+    {
+        int low = 0, high = this.prices.length; // Find the first room that costs more than the price
+        while(low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if(this.prices[middle] <= price)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * This method returns the rooms whose prices are lower than or equal to the price provided, sorted by price.
+     * @param price the highest price.
+     * @return the list of rooms.
+     */
+    protected List<Room> cheaperThan(int price)
+    {
+        return new Rooms(this.byPrice, countCheaperThan(price));
+    }
+
+    /**
+     * This method returns the number of the room at a position in the rooms sorted by price.
+     * @param position the position of the room, starting from the cheapest.
+     * @return the number of the room.
+     */
+    protected int byPrice(int position)
+    {
+        return this.byPrice[position];
+    }
+
+    /**
+     * This method returns the rooms that have a particular number of beds.
+     * @param beds the number of beds.
+     * @return the list of rooms.
+     */
+    protected List<Room> withBeds(int beds)
+    {
+        int[] numbers = this.byBeds.getOrDefault(beds, new int[0]);
+        return new Rooms(numbers, numbers.length);
+    }
+
+    /**
+     * This method checks if a room has a particular number of beds, using the bitmap of that number of beds.
+     * @param bitmap the bitmap returned by {@link #bedsBitmap(int)}.
+     * @param room the number of the room.
+     * @return true if the bit of the room is set.
+     */
+    protected static boolean contains(long[] bitmap, int room)
+    {
+        return (room >>> 6) < bitmap.length && (bitmap[room >>> 6] & (1L << (room & 63))) != 0;
+    }
+
+    /**
+     * This method returns the bitmap of the rooms that include all of a set of amenities.
+     * @param amenities the bitmask of the amenities, see {@link Amenity}.
+     * @return a new bitmap, with a bit set for each room that includes every one of the amenities.
+     */
+    protected long[] withAmenities(int amenities)
+    {
+        long[] rooms = new long[(this.columns.size() + 63) / 64];
+        Arrays.fill(rooms, -1L);
+        if(rooms.length > 0 && (this.columns.size() & 63) != 0)
+            rooms[rooms.length - 1] = (1L << (this.columns.size() & 63)) - 1; // No bits past the last room
+        for(Amenity amenity : Amenity.values())
+            if((amenities & amenity.bit()) != 0)
+                for(int word = 0; word < rooms.length; ++word)
+                    rooms[word] &= this.amenityBitmaps[amenity.ordinal()][word];
+        return rooms;
+    }
+
+    /**
+     * This method returns the bitmap of the rooms that have a particular number of beds.
+     * @param beds the number of beds.
+     * @return the bitmap, which must not be changed.
+     */
+    protected long[] bedsBitmap(int beds)
+    {
+        return this.bedsBitmaps.getOrDefault(beds, new long[0]);
+    }
+}
@@ -0,0 +1,114 @@
+package hotel;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+
+/**
+ * This class is used to show a listing of rooms to a client one page of hotel.roomPageSize rooms at a time.
+ * A page is found from a cursor, which says where the page starts in whatever order the rooms are listed, e.g. a room number or a position
+ * in the rooms sorted by price. Each page is read straight from the indexes of the hotel, starting at its cursor, so a page never costs more
+ * than its own rooms to render, whatever the size of the hotel. The cursors of the pages already shown are kept, so the client can go back.
+ */
+public class RoomListing
+{
+    /**
+     * This interface is used to find one page of the rooms of a listing.
+     */
+    protected interface Scan
+    {
+        /**
+         * This method passes the rooms of a page on to an action, in the order they are listed.
+         * @param cursor where the page starts; 0 for the first page.
+         * @param limit the highest number of rooms on the page.
+         * @param action what is done with each room.
+         * @return the cursor of the next page, or -1 if this is the last page.
+         */
+        int scan(int cursor, int limit, Consumer<Room> action);
+    }
+
+    private final String key; // What is listed, including every parameter of the listing
+    private final String title; // The line shown above the rooms, or null for none
+    private final boolean numbered; // Whether each room is shown with its number, so that the client can select it
+    private final boolean bookings; // Whether each room is shown with its bookings, which name the customers who made them
+    private final String prompt; // What the client is asked once the page is shown
+    private final Scan scan;
+    private final Deque<Integer> previous = new ArrayDeque<>(); // The cursors of the pages shown before the current page
+    private int cursor = 0; // The cursor of the current page
+    private int next = -1; // The cursor of the page after the current page, or -1 if it is the last page
+
+    protected RoomListing(String key, String title, boolean numbered, String prompt, Scan scan)
+    {
+        this(key, title, numbered, true, prompt, scan);
+    }
+
+    protected RoomListing(String key, String title, boolean numbered, boolean bookings, String prompt, Scan scan)
+    {
+        this.key = key;
+        this.title = title;
+        this.numbered = numbered;
+        this.bookings = bookings;
+        this.prompt = prompt;
+        this.scan = scan;
+    }
+
+    /**
+     * This method moves the listing to the next page.
+     * @return false if the current page is the last page.
+     */
+    protected boolean next()
+    {
+        if(this.next < 0)
+            return false;
+        this.previous.push(this.cursor);
+        this.cursor = this.next;
+        return true;
+    }
+
+    /**
+     * This method moves the listing to the previous page.
+     * @return false if the current page is the first page.
+     */
+    protected boolean previous()
+    {
+        if(this.previous.isEmpty())
+            return false;
+        this.cursor = this.previous.pop();
+        return true;
+    }
+
+    /**
+     * This method renders the current page, or takes it from the listings of the hotel if the hotel has not changed since it was rendered.
+     * @param responses the rendered listings of the hotel.
+     * @return the bytes of the page, which must not be changed.
+     */
+    protected byte[] render(ResponseCache responses)
+    {
+        int cursor = this.cursor;
+        ResponseCache.Response page = responses.get(this.key + " " + this.prompt + " " + cursor + " " + Config.roomPageSize, writer -> {
+            if(this.title != null)
+                writer.println(this.title);
+            boolean[] found = {false};
+            int next = this.scan.scan(cursor, Config.roomPageSize, room -> {
+                found[0] = true;
+                String shown = this.bookings ? room.toString() : room.summary();
+                if(this.numbered) // The number of the room, so that the client can select it
+                    writer.println((room.number + 1) + ": " + shown + '\n');
+                else
+                    writer.println(shown);
+            });
+            if(!found[0])
+                writer.println(cursor == 0 ? "Sorry, There Are No Rooms Available." : "There Are No More Rooms.");
+            if(next >= 0 && cursor > 0)
+                writer.println("Enter N for the next page or P for the previous page.");
+            else if(next >= 0)
+                writer.println("Enter N for the next page.");
+            else if(cursor > 0)
+                writer.println("Enter P for the previous page.");
+            writer.print(this.prompt);
+            return next;
+        });
+        this.next = page.next;
+        return page.bytes;
+    }
+}
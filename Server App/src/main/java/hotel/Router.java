@@ -0,0 +1,418 @@
+package hotel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is used to spread the hotels across several server processes, the shards, behind a single port.
+ * Each shard is an ordinary server started with hotel.shards and hotel.shard, which keeps its own data directory and only holds its share of the hotels.
+ * The router, started with hotel.mode=router, learns which hotels each shard holds through the command protocol of the shard, shows the hotels
+ * of every shard on its own landing page, and once the client selects a hotel, selects it on the shard that holds it and from then on
+ * forwards the session between the client and that shard untouched. The router asks every shard again every hotel.shardRefresh milliseconds,
+ * and as soon as a shard cannot be reached, so a shard that restarts with other hotels shows them. For example, two shards and their router on one machine:
+ *   java -Dhotel.shards=2 -Dhotel.shard=0 -Dhotel.port=2817 -Dhotel.commandPort=2819 -Dhotel.metricsPort=0 Main
+ *   java -Dhotel.shards=2 -Dhotel.shard=1 -Dhotel.port=2827 -Dhotel.commandPort=2829 -Dhotel.metricsPort=0 Main
+ *   java -Dhotel.mode=router -Dhotel.shardList=127.0.0.1:2817:2819,127.0.0.1:2827:2829 Main
+ */
+public class Router
+{
+    private static final String prompt = "Select Hotel: "; // The end of the landing page, of the router and of a shard
+
+    private static final List<Shard> shards = new ArrayList<>(); // Every shard, in the order of hotel.shardList
+    private static volatile List<RoutedHotel> hotels = Collections.emptyList(); // The hotels of every shard, the best rated first, as on the landing page of a shard
+    private static final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "shard-refresh");
+        thread.setDaemon(true);
+        return thread;
+    }); // Asks the shards for their hotels, so that no client waits for a shard that cannot be reached
+
+    /**
+     * This class is used to represent a shard: where its menus and its command protocol are served, and the hotels it holds once they are known.
+     */
+    private static class Shard
+    {
+        private final String host;
+        private final int port; // The port of the menus
+        private final int commandPort; // The port of the command protocol
+        private boolean unavailable; // Whether the shard could not be reached on the last refresh, so that it is only reported once
+        private volatile List<RoutedHotel> hotels; // The hotels of the shard as it last answered, or null if the shard has not answered yet; replaced, never changed, by the refresh
+
+        private Shard(String address)
+        {
+            String[] parts = address.trim().split(":");
+            if(parts.length != 3)
+                throw new IllegalArgumentException("Invalid shard " + address + ", expected host:port:commandPort");
+            this.host = parts[0];
+            this.port = Integer.parseInt(parts[1]);
+            this.commandPort = Integer.parseInt(parts[2]);
+        }
+
+        @Override
+        public String toString()
+        {
+            return this.host + ":" + this.port;
+        }
+    }
+
+    /**
+     * This class is used to represent a hotel held by a shard, as the router shows it.
+     */
+    private static class RoutedHotel
+    {
+        private final Shard shard;
+        private final int id; // The id of the hotel on its shard
+        private final String name;
+        private final String location;
+        private final int ratings;
+
+        private RoutedHotel(Shard shard, int id, String name, String location, int ratings)
+        {
+            this.shard = shard;
+            this.id = id;
+            this.name = name;
+            this.location = location;
+            this.ratings = ratings;
+        }
+
+        /**
+         * This method converts this hotel into the same user-friendly format as the landing page of a shard.
+         * @return the String representation of this hotel.
+         */
+        @Override
+        public String toString()
+        {
+            return "Hotel \n{ " +
+                    "\n\tName: " + this.name +
+                    "\n\tLocation: " + this.location +
+                    "\n\tRatings: " + this.ratings +
+                    "\n}";
+        }
+    }
+
+    /**
+     * This method starts the router: it asks every shard for its hotels and then forwards clients until the process is stopped.
+     */
+    protected static void start()
+    {
+        for(String address : Config.shardList.split(","))
+            if(!address.isBlank())
+                Router.shards.add(new Shard(address));
+        if(Router.shards.isEmpty())
+        {
+            System.out.println("No Shards Were Given, Set hotel.shardList");
+            System.exit(1);
+        }
+        refresh();
+        Router.refresher.scheduleWithFixedDelay(Router::refresh, Config.shardRefresh, Config.shardRefresh, TimeUnit.MILLISECONDS);
+
+        ExecutorService executor = SessionPool.virtualThreads(); // Each session needs a thread for each direction, so virtual threads are used when the JDK supports them
+        ExecutorService sessions = executor != null ? executor : Executors.newCachedThreadPool();
+        ServerSocket serverSocket = null;
+        try
+        {
+            serverSocket = new ServerSocket(Config.port, Config.backlog, InetAddress.getByName("127.0.0.1"));
+            System.out.println("Router has started! Forwarding To " + Router.shards.size() + " Shards");
+        }
+        catch (IOException exception)
+        {
+            exception.printStackTrace();
+            System.exit(1);
+        }
+
+        while(true)
+        {
+            try
+            {
+                Socket client = serverSocket.accept();
+                sessions.execute(() -> Router.serve(client, sessions));
+            }
+            catch (IOException exception)
+            {
+                exception.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * This method asks every shard for its hotels, through the LIST_HOTELS command of their command protocol, and rebuilds the hotels of the landing page.
+     * A shard that cannot be reached keeps the hotels it last answered with and is asked again on the next refresh.
+     */
+    private static synchronized void refresh()
+    {
+        boolean changed = false;
+        for(Shard shard : Router.shards)
+        {
+            try(Socket socket = new Socket())
+            {
+                socket.connect(new InetSocketAddress(shard.host, shard.commandPort), Config.shardTimeout);
+                socket.setSoTimeout(Config.shardTimeout); // A shard that hangs must not hold up the next refresh
+                OutputStream output = socket.getOutputStream();
+                output.write("LIST_HOTELS\n".getBytes(StandardCharsets.UTF_8));
+                output.flush();
+                InputStream input = new BufferedInputStream(socket.getInputStream());
+                String[] header = new String(readUntil(input, "\n"), StandardCharsets.UTF_8).trim().split(" ");
+                if(header.length < 2)
+                    throw new IOException("The shard closed the connection");
+                String body = new String(input.readNBytes(Integer.parseInt(header[1])), StandardCharsets.UTF_8);
+                if(!header[0].equals("OK"))
+                    throw new IOException(body);
+
+                List<RoutedHotel> hotels = new ArrayList<>();
+                for(String row : body.split("\n"))
+                {
+                    if(row.isEmpty())
+                        continue;
+                    String[] fields = row.split("\t"); // id, name, location, ratings, number of rooms
+                    hotels.add(new RoutedHotel(shard, Integer.parseInt(fields[0]), fields[1], fields[2], Integer.parseInt(fields[3])));
+                }
+                if(shard.hotels == null || !sameHotels(shard.hotels, hotels))
+                {
+                    shard.hotels = hotels;
+                    changed = true;
+                    System.out.println("Shard " + shard + " Holds " + hotels.size() + " Hotels");
+                }
+            }
+            catch (IOException | RuntimeException exception)
+            {
+                if(!shard.unavailable)
+                    System.out.println("Shard " + shard + " Is Not Available: " + exception.getMessage());
+                shard.unavailable = true;
+                continue;
+            }
+            shard.unavailable = false;
+        }
+        if(!changed)
+            return;
+        List<RoutedHotel> hotels = new ArrayList<>();
+        for(Shard shard : Router.shards)
+            if(shard.hotels != null)
+                hotels.addAll(shard.hotels);
+        hotels.sort(Comparator.comparingInt(hotel -> -hotel.ratings)); // Hotels with the same rating stay in the order of their shards
+        Router.hotels = Collections.unmodifiableList(hotels);
+    }
+
+    /**
+     * This method compares the hotels a shard has answered with against the hotels it answered with before.
+     * @param before the hotels of the shard before.
+     * @param after the hotels of the shard now.
+     * @return true if the shard holds the same hotels, with the same ratings, as before.
+     */
+    private static boolean sameHotels(List<RoutedHotel> before, List<RoutedHotel> after)
+    {
+        if(before.size() != after.size())
+            return false;
+        for(int i = 0; i < before.size(); ++i)
+        {
+            RoutedHotel a = before.get(i), b = after.get(i);
+            if(a.id != b.id || a.ratings != b.ratings || !a.name.equals(b.name) || !a.location.equals(b.location))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * This method shows the landing page to a client and, once the client selects a hotel, forwards the session to the shard that holds it.
+     * @param client the socket of the client.
+     * @param sessions where the thread forwarding the shard to the client runs.
+     */
+    private static void serve(Socket client, ExecutorService sessions)
+    {
+        try
+        {
+            List<RoutedHotel> hotels = Router.hotels; // The same hotels for the whole landing page, even if a shard answers meanwhile
+            BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8)); // The same encoding as the shards
+            PrintWriter writer = new PrintWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8));
+            int page = 0;
+            home(writer, hotels, page);
+            String line;
+            while((line = reader.readLine()) != null)
+            {
+                String command = line.trim();
+                if(command.equalsIgnoreCase("N") || command.equalsIgnoreCase("P")) // If the client wishes to see another page of hotels
+                {
+                    page = home(writer, hotels, page + (command.equalsIgnoreCase("N") ? 1 : -1));
+                    continue;
+                }
+                int response;
+                try
+                {
+                    response = Integer.parseInt(command);
+                }
+                catch (NumberFormatException ignored)
+                {
+                    response = -1;
+                }
+                if(response <= 0 || response > hotels.size()) // If the client wishes to leave or the response is not valid
+                    break;
+                forward(client, reader, hotels.get(response - 1), sessions);
+                return;
+            }
+            writer.print("Disconnected");
+            writer.flush();
+            client.close();
+        }
+        catch (IOException exception)
+        {
+            close(client);
+        }
+    }
+
+    /**
+     * This method shows a page of the landing page of the router, in the same format as the landing page of a shard.
+     * @param writer where the page is written.
+     * @param hotels the hotels of every shard.
+     * @param page the page to show; it is moved back within the pages if there is no such page.
+     * @return the page shown.
+     */
+    private static int home(PrintWriter writer, List<RoutedHotel> hotels, int page)
+    {
+        int pages = Math.max(1, (hotels.size() + Config.pageSize - 1) / Config.pageSize);
+        page = Math.max(0, Math.min(page, pages - 1));
+        writer.println("..........*W*E*L*C*O*M*E*.........");
+        writer.println("Thank you for choosing CEO-Tourism.gr for your stay!");
+        writer.println("..................................");
+        writer.println("Please select a hotel.");
+        writer.println("Note: You can always enter 0 to quit.");
+        writer.println("Enter N or P for the next or previous page.");
+        writer.println();
+        for(int i = page * Config.pageSize; i < Math.min((page + 1) * Config.pageSize, hotels.size()); ++i)
+            writer.println((i + 1) + ": " + hotels.get(i) + '\n');
+        writer.println("Page " + (page + 1) + " Of " + pages + " (" + hotels.size() + " Hotels)");
+        writer.print(Router.prompt);
+        writer.flush();
+        return page;
+    }
+
+    /**
+     * This method selects a hotel on the shard that holds it and forwards the rest of the session between the client and the shard.
+     * The landing page of the shard is skipped, so the client goes straight from the landing page of the router to the welcome page of the hotel.
+     * If the shard cannot be reached or does not show its landing page within hotel.shardTimeout milliseconds, the client is told that the hotel is not available.
+     * @param client the socket of the client.
+     * @param reader what the client has sent, including anything sent after selecting the hotel that has already been read.
+     * @param hotel the hotel selected.
+     * @param sessions where the thread forwarding the shard to the client runs.
+     */
+    private static void forward(Socket client, Reader reader, RoutedHotel hotel, ExecutorService sessions)
+    {
+        Socket shard = new Socket();
+        InputStream fromShard;
+        try
+        {
+            shard.connect(new InetSocketAddress(hotel.shard.host, hotel.shard.port), Config.shardTimeout);
+            shard.setTcpNoDelay(true);
+            shard.setSoTimeout(Config.shardTimeout); // A shard that hangs must not hold the client forever
+            fromShard = new BufferedInputStream(shard.getInputStream());
+            readUntil(fromShard, Router.prompt); // The landing page of the shard
+            shard.getOutputStream().write(((hotel.id + 1) + "\n").getBytes(StandardCharsets.UTF_8));
+            shard.getOutputStream().flush();
+            shard.setSoTimeout(0); // From now on the shard waits for the client, which may take its time
+        }
+        catch (IOException exception)
+        {
+            close(shard);
+            Router.refresher.execute(Router::refresh); // The shard may have gone or restarted with other hotels
+            try
+            {
+                PrintWriter writer = new PrintWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8));
+                writer.print("Sorry, " + hotel.name + " Is Not Available Right Now.\nDisconnected");
+                writer.flush();
+            }
+            catch (IOException ignored) // The client has gone
+            {
+            }
+            close(client);
+            return;
+        }
+
+        sessions.execute(() -> { // From the shard to the client, until the shard disconnects the client
+            try
+            {
+                fromShard.transferTo(client.getOutputStream());
+            }
+            catch (IOException ignored) // One of the two has gone
+            {
+            }
+            close(client);
+            close(shard);
+        });
+        try // From the client to the shard, until the client disconnects
+        {
+            Writer toShard = new OutputStreamWriter(shard.getOutputStream(), StandardCharsets.UTF_8);
+            char[] buffer = new char[8192];
+            int read;
+            while((read = reader.read(buffer)) != -1)
+            {
+                toShard.write(buffer, 0, read);
+                toShard.flush();
+            }
+        }
+        catch (IOException ignored) // One of the two has gone
+        {
+        }
+        close(shard);
+        close(client);
+    }
+
+    /**
+     * This method reads from a stream until a piece of text has been read.
+     * @param input the stream.
+     * @param end the text that ends what is read.
+     * @return everything read, including the text.
+     * @throws IOException if the stream ends first.
+     */
+    private static byte[] readUntil(InputStream input, String end) throws IOException
+    {
+        byte[] marker = end.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        int matched = 0; // How much of the text has just been read
+        while(matched < marker.length)
+        {
+            int next = input.read();
+            if(next == -1)
+                throw new IOException("The connection was closed");
+            read.write(next);
+            if(next == (marker[matched] & 0xff))
+                ++matched;
+            else
+                matched = next == (marker[0] & 0xff) ? 1 : 0;
+        }
+        return read.toByteArray();
+    }
+
+    /**
+     * This method closes a socket, ignoring any error.
+     * @param socket the socket.
+     */
+    private static void close(Socket socket)
+    {
+        try
+        {
+            socket.close();
+        }
+        catch (IOException ignored)
+        {
+        }
+    }
+}
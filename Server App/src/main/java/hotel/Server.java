@@ -17,14 +17,36 @@ public class Server
 	 */
 	public static void start()
 	{
-		Hotel.init(); // Initialize the hotels
+		if(Config.mode.equalsIgnoreCase("router")) // If this process only forwards clients to the shards that hold the hotels
+		{
+			Router.start();
+			return;
+		}
+
+		Metrics.open(); // Publish the metrics, so that loading the hotels can be watched
+		if(Config.role.equals("replica")) // If this process only serves a copy of the hotels of a primary
+			Replication.follow(); // Load the hotels from the primary and keep up with its bookings
+		else
+		{
+			Hotel.init(); // Initialize the hotels
+			Replication.serve(); // Ship the bookings to the replicas
+		}
+		CommandServer.start(); // Serve the command protocol next to the menus
+
+		if(Config.mode.equalsIgnoreCase("nio")) // If the non-blocking mode was selected, let the selector handle the clients
+		{
+			NioServer.start("127.0.0.1", Config.port);
+			return;
+		}
 
 		ServerSocket serverSocket = null; // Declare a new serverSocket
 
 		try
 		{
-			serverSocket = new ServerSocket(2807, 0, InetAddress.getByName("127.0.0.1")); // Create the serverSocket and listen on the specified address and port number
-			System.out.println("Server has started!");
+			serverSocket = new ServerSocket(Config.port, Config.backlog, InetAddress.getByName("127.0.0.1")); // Create the serverSocket and listen on the specified address and port number
+			if(Config.mode.equalsIgnoreCase("pool")) // If the pool mode was selected, create the executor of the sessions
+				SessionPool.open();
+			System.out.println("Server has started!" + (Config.shards > 1 ? " (Shard " + Config.shard + " Of " + Config.shards + ", Port " + Config.port + ")" : ""));
 		}
 		catch (Exception ex)
 		{
@@ -38,7 +60,10 @@ public class Server
 			try
 			{
 				client = serverSocket.accept(); // Assign the client to the incoming socket received by the serverSocket
-				new Thread(new Connection(client)).start(); // Wrap the socket into a connection and into a thread and start the thread
+				if(Config.mode.equalsIgnoreCase("pool"))
+					SessionPool.submit(client); // Let the pool run the connection
+				else
+					new Thread(new Connection(client)).start(); // Wrap the socket into a connection and into a thread and start the thread
 			}
 			catch (Exception e)
 			{
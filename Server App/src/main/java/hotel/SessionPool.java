@@ -0,0 +1,148 @@
+package hotel;
+
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is used to represent the pool mode of the server.
+ * Each connection keeps its blocking input and output, but runs on a virtual thread when the JDK supports them, or on a bounded pool of platform threads otherwise.
+ * The number of sessions is capped, and a client that arrives while the server is full is told so and disconnected.
+ */
+public class SessionPool
+{
+    private static ExecutorService executor; // The executor on which the connections run
+    private static Semaphore sessions; // One permit for each session the server is willing to hold
+    private static final AtomicInteger active = new AtomicInteger(); // The number of sessions currently running
+    private static final AtomicInteger queued = new AtomicInteger(); // The number of sessions waiting for a thread
+    private static final AtomicLong rejected = new AtomicLong(); // The number of clients turned away because the server was full
+
+    /**
+     * This method creates the executor of the pool.
+     */
+    protected static void open()
+    {
+        SessionPool.sessions = new Semaphore(Config.maxSessions);
+        SessionPool.executor = Config.virtualThreads ? SessionPool.virtualThreads() : null;
+        if(SessionPool.executor == null) // If virtual threads are not available, fall back to a bounded pool of platform threads
+        {
+            SessionPool.executor = new ThreadPoolExecutor(Config.poolThreads, Config.poolThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+            System.out.println("Running Sessions On " + Config.poolThreads + " Platform Threads");
+        }
+        else
+            System.out.println("Running Sessions On Virtual Threads");
+    }
+
+    /**
+     * This method creates an executor that starts a new virtual thread for each session.
+     * Virtual threads were added in JDK 21, so the executor is looked up by reflection to keep the server running on older JDKs.
+     * @return the executor, or null if the JDK does not support virtual threads.
+     */
+    protected static ExecutorService virtualThreads()
+    {
+        try
+        {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (Exception ignored)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * This method runs a new connection on the pool, or rejects the client if the server already holds as many sessions as allowed.
+     * @param client the socket of the client that has just connected.
+     */
+    protected static void submit(Socket client)
+    {
+        if(!SessionPool.sessions.tryAcquire()) // If the server is full
+        {
+            SessionPool.reject(client);
+            return;
+        }
+
+        SessionPool.queued.incrementAndGet();
+        try
+        {
+            Connection connection = new Connection(client);
+            SessionPool.executor.execute(() -> {
+                SessionPool.queued.decrementAndGet();
+                SessionPool.active.incrementAndGet();
+                try
+                {
+                    connection.run();
+                }
+                finally
+                {
+                    SessionPool.active.decrementAndGet();
+                    SessionPool.sessions.release();
+                }
+            });
+        }
+        catch (Exception e)
+        {
+            SessionPool.queued.decrementAndGet();
+            SessionPool.sessions.release();
+            SessionPool.reject(client);
+        }
+    }
+
+    /**
+     * This method tells a client that the server is full and disconnects it.
+     * @param client the socket of the client being rejected.
+     */
+    private static void reject(Socket client)
+    {
+        SessionPool.rejected.incrementAndGet();
+        try
+        {
+            PrintWriter writer = new PrintWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8));
+            writer.println("Sorry, the server is busy. Please try again later.");
+            writer.print("Disconnected");
+            writer.flush();
+            client.close();
+        }
+        catch (Exception ignored)
+        {
+
+        }
+        System.out.println("Rejected Client " + client.getInetAddress() + " (" + SessionPool.active.get() + " Active, " + SessionPool.queued.get() + " Queued Sessions)");
+    }
+
+    /**
+     * This method returns the number of sessions currently running.
+     * @return the number of active sessions.
+     */
+    public static int getActive()
+    {
+        return SessionPool.active.get();
+    }
+
+    /**
+     * This method returns the number of sessions waiting for a thread. Only a pool of platform threads ever has queued sessions.
+     * @return the number of queued sessions.
+     */
+    public static int getQueued()
+    {
+        return SessionPool.queued.get();
+    }
+
+    /**
+     * This method returns the number of clients turned away because the server was full.
+     * @return the number of rejected clients.
+     */
+    public static long getRejected()
+    {
+        return SessionPool.rejected.get();
+    }
+}
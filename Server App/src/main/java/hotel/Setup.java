@@ -1,5 +1,6 @@
 package hotel;
 
+import java.io.IOException;
 import java.util.Random;
 
 /**
@@ -8,8 +9,9 @@ import java.util.Random;
 public class Setup
 {
     private static final Random random = new Random(System.currentTimeMillis()); // Used to create random numbers
+    private static int created = 0; // The number of default hotels created so far, whichever shard they belong to
 
-    private static final String[] descriptions =
+    protected static final String[] descriptions =
     {
         "Includes free Wi-Fi services and free parking services ",
         "Includes breakfast, free Wi-Fi services and free parking services ",
@@ -19,11 +21,23 @@ public class Setup
         "Includes free Wi-Fi services, free parking services and pool access"
     }; // Descriptions for rooms
 
+    /**
+     * This method adds a default hotel to the server, unless it belongs to another shard.
+     * The default hotels are dealt out to the shards in turn, so that together the shards hold every default hotel once.
+     * @param hotel the hotel that was created.
+     */
+    private static void addHotel(Hotel hotel)
+    {
+        if(Setup.created++ % Config.shards == Config.shard)
+            Hotel.addHotel(hotel);
+    }
+
     /**
      * This method creates the default hotels and rooms.
      * Note: the hotels have random characteristics.
+     * @throws IOException if the data file could not be written.
      */
-    protected static void createDefaultHotels()
+    protected static void createDefaultHotels() throws IOException
     {
         int numberOfRooms = 5; // Each hotel has only 5 rooms
 
@@ -33,9 +47,9 @@ public class Setup
             int numberOfBeds = Math.abs(random.nextInt() % 3) + 1; // Create a random number of beds between 1 and 3
             int price = Math.abs(random.nextInt() % 301) + 100; // Create a random price between $100 and $400
             int description = Math.abs(random.nextInt()) % Setup.descriptions.length; // Choose a random index for the room description
-            hotel.getRooms().add(new Room( Setup.descriptions[description], price, numberOfBeds)); // Add a new room to the rooms in the hotel
+            hotel.addRoom(new Room( Setup.descriptions[description], price, numberOfBeds)); // Add a new room to the rooms in the hotel
         }
-        Hotel.hotels.add(hotel); // Add the hotel to the list of hotels
+        Setup.addHotel(hotel); // Add the hotel to the list of hotels, if it belongs to this shard
 
         // Repeat the process for as many hotels as you want to create
 
@@ -45,9 +59,9 @@ public class Setup
             int numberOfBeds = Math.abs(random.nextInt() % 3) + 1;
             int price = Math.abs(random.nextInt() % 131) + 50;
             int description = Math.abs(random.nextInt()) % Setup.descriptions.length;
-            hotel.getRooms().add(new Room( Setup.descriptions[description], price, numberOfBeds));
+            hotel.addRoom(new Room( Setup.descriptions[description], price, numberOfBeds));
         }
-        Hotel.hotels.add(hotel);
+        Setup.addHotel(hotel);
 
         hotel = new Hotel("Olympian Bay", "Parga", 4);
         for(int i = 0; i < numberOfRooms; ++i)
@@ -55,9 +69,9 @@ public class Setup
             int numberOfBeds = Math.abs(random.nextInt() % 3) + 1;
             int price = Math.abs(random.nextInt() % 151) + 50;
             int description = Math.abs(random.nextInt()) % Setup.descriptions.length;
-            hotel.getRooms().add(new Room( Setup.descriptions[description], price, numberOfBeds));
+            hotel.addRoom(new Room( Setup.descriptions[description], price, numberOfBeds));
         }
-        Hotel.hotels.add(hotel);
+        Setup.addHotel(hotel);
 
         hotel = new Hotel("Summer View Hotel", "Thessaloniki", 5);
         for(int i = 0; i < numberOfRooms; ++i)
@@ -65,9 +79,9 @@ public class Setup
             int numberOfBeds = Math.abs(random.nextInt() % 3) + 1;
             int price = Math.abs(random.nextInt() % 301) + 60;
             int description = Math.abs(random.nextInt()) % Setup.descriptions.length;
-            hotel.getRooms().add(new Room( Setup.descriptions[description], price, numberOfBeds));
+            hotel.addRoom(new Room( Setup.descriptions[description], price, numberOfBeds));
         }
-        Hotel.hotels.add(hotel);
+        Setup.addHotel(hotel);
 
         hotel = new Hotel("Hotel Zeus", "Athens", 3);
         for(int i = 0; i < numberOfRooms; ++i)
@@ -75,9 +89,9 @@ public class Setup
             int numberOfBeds = Math.abs(random.nextInt() % 3) + 1;
             int price = Math.abs(random.nextInt() % 81) + 30;
             int description = Math.abs(random.nextInt()) % Setup.descriptions.length;
-            hotel.getRooms().add(new Room( Setup.descriptions[description], price, numberOfBeds));
+            hotel.addRoom(new Room( Setup.descriptions[description], price, numberOfBeds));
         }
-        Hotel.hotels.add(hotel);
+        Setup.addHotel(hotel);
 
         Hotel.saveRooms(); // After all the rooms and hotels have been created and added, save the result to the data file.
     }
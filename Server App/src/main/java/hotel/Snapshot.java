@@ -0,0 +1,144 @@
+package hotel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class is used to save the hotels to a compact binary data file and to load them back.
+ * Unlike the text data file, nothing has to be searched for or split: every number has a fixed width and every string is preceded by its length.
+ * Room descriptions repeat a lot, so the dictionary of descriptions is written once, at the start of the file,
+ * and rooms refer to a description by its id. Loading adds the dictionary to the dictionary of the server, so rooms share their descriptions.
+ * File format (version 2):
+ *   int magic, int version,
+ *   int descriptions, then each description as a length-prefixed string,
+ *   int hotels, then for each hotel: string name, string location, int ratings, int rooms,
+ *   then for each room: int description, int price, int beds, int bookings,
+ *   then for each booking: int start, int duration, long timestamp, string customer.
+ * Version 1 did not save the name of the customer, so its bookings are loaded as {@link BookingDetails#anonymous}.
+ */
+public class Snapshot
+{
+    private static final int MAGIC = 0x48544C53; // "HTLS", so that a file that is not a snapshot is never read as one
+    private static final int VERSION = 2; // Raised whenever the format changes, so that older servers refuse newer files
+    private static final int BUFFER = 1 << 16; // The size of the buffers used for reading and writing
+
+    /**
+     * This method saves all the hotels in the server to a snapshot.
+     * @param file the file to be written.
+     * @throws IOException if the file could not be written.
+     */
+    protected static void save(Path file) throws IOException
+    {
+        try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER)))
+        {
+            Snapshot.write(output);
+        }
+    }
+
+    /**
+     * This method writes all the hotels in the server as a snapshot, e.g. to a replica, see {@link Replication}.
+     * Nothing is written past the end of the snapshot, so the stream can go on with other data.
+     * @param output where the snapshot is written. It is not flushed.
+     * @throws IOException if the snapshot could not be written.
+     */
+    protected static void write(DataOutputStream output) throws IOException
+    {
+        int descriptions = Descriptions.size(); // Rooms are never given an id that is not in the dictionary yet
+        output.writeInt(Snapshot.MAGIC);
+        output.writeInt(Snapshot.VERSION);
+        output.writeInt(descriptions);
+        for(int id = 0; id < descriptions; ++id)
+            output.writeUTF(Descriptions.get(id));
+
+        output.writeInt(Hotel.getHotels().size());
+        for(Hotel hotel : Hotel.getHotels())
+        {
+            List<Room> rooms = hotel.getRooms(); // The rooms are read once, so that the count and the rooms written belong together
+            output.writeUTF(hotel.getName());
+            output.writeUTF(hotel.getLocation());
+            output.writeInt(hotel.getRatings());
+            output.writeInt(rooms.size());
+            for(Room room : rooms)
+            {
+                List<BookingDetails> bookings = new ArrayList<>(room.getBookings()); // Copied, so that a booking made meanwhile does not change the count
+                output.writeInt(room.descriptionId);
+                output.writeInt(room.price);
+                output.writeInt(room.numberOfBeds);
+                output.writeInt(bookings.size());
+                for(BookingDetails details : bookings)
+                {
+                    output.writeInt(details.startDate);
+                    output.writeInt(details.DurationInDays);
+                    output.writeLong(details.timeStamp);
+                    output.writeUTF(details.customerName);
+                }
+            }
+        }
+    }
+
+    /**
+     * This method loads the hotels from a snapshot and adds them to the server.
+     * @param file the file to be read.
+     * @throws IOException if the file could not be read, is not a snapshot or was written in a newer format.
+     */
+    protected static void load(Path file) throws IOException
+    {
+        try(DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER)))
+        {
+            for(Hotel hotel : Snapshot.read(input, file.toString()))
+                Hotel.addHotel(hotel);
+        }
+    }
+
+    /**
+     * This method reads the hotels of a snapshot, without adding them to the server.
+     * Nothing is read past the end of the snapshot, so the stream can go on with other data.
+     * @param input where the snapshot is read from.
+     * @param source where the snapshot comes from, for the error messages.
+     * @return the hotels, in the order of the snapshot.
+     * @throws IOException if the snapshot could not be read, is not a snapshot or was written in a newer format.
+     */
+    protected static List<Hotel> read(DataInputStream input, String source) throws IOException
+    {
+        List<Hotel> loaded = new ArrayList<>();
+        if(input.readInt() != Snapshot.MAGIC)
+            throw new IOException(source + " is not a hotel snapshot");
+        int version = input.readInt();
+        if(version > Snapshot.VERSION)
+            throw new IOException(source + " was written in version " + version + " of the snapshot format, which this server does not support");
+
+        int[] descriptions = new int[input.readInt()]; // The ids of the file may differ from those of the server, so each is mapped to the id of the server
+        for(int i = 0; i < descriptions.length; ++i)
+            descriptions[i] = Descriptions.id(input.readUTF());
+
+        int hotels = input.readInt();
+        for(int h = 0; h < hotels; ++h)
+        {
+            Hotel hotel = new Hotel(input.readUTF(), input.readUTF(), input.readInt());
+            int count = input.readInt();
+            List<Room> rooms = new ArrayList<>(count);
+            for(int r = 0; r < count; ++r)
+            {
+                Room room = new Room(descriptions[input.readInt()], input.readInt(), input.readInt());
+                int bookings = input.readInt();
+                for(int b = 0; b < bookings; ++b)
+                {
+                    int start = input.readInt(), duration = input.readInt();
+                    long timeStamp = input.readLong();
+                    room.setDetails(new BookingDetails(version >= 2 ? input.readUTF() : BookingDetails.anonymous, start, duration, timeStamp));
+                }
+                rooms.add(room);
+            }
+            hotel.addRooms(rooms);
+            loaded.add(hotel);
+        }
+        return loaded;
+    }
+}